@@ -1,20 +1,54 @@
 package it.uniroma1.tresette.controller;
 
+import it.uniroma1.tresette.controller.ai.RisolutoreCarteScoperte;
+import it.uniroma1.tresette.controller.ai.StrategiaISMCTS;
+import it.uniroma1.tresette.controller.ai.StrategiaPIMC;
+import it.uniroma1.tresette.controller.ai.TabellaTrasposizioneOffHeap;
+import it.uniroma1.tresette.controller.ai.TracciatoreCarte;
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Seme;
 
 import java.util.List;
 import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
 
 /**
  * Gestisce la logica dell'intelligenza artificiale nel gioco di Tresette.
  * Implementa la strategia di gioco per i giocatori automatici.
  */
 public class AIPlayer {
+    /** Tempo massimo di ragionamento del risolutore per ogni carta finché la mano è troppo lunga da risolvere */
+    private static final long BUDGET_RISOLUTORE_MS = 300;
+    /**
+     * Carte rimaste in mano ai due giocatori da cui il risolutore cerca senza
+     * limite di tempo: con 24 carte la risoluzione esatta richiede in media
+     * 0,3 secondi e al massimo circa 1,3
+     */
+    private static final int CARTE_RISOLUZIONE_ESATTA = 24;
+    /** Tempo di ragionamento per ogni carta in modalità 4 giocatori: resta sotto l'attesa di 1,5 secondi della UI */
+    private static final long BUDGET_4_GIOCATORI_MS = 1000;
+    /** Nodi di ciascuna delle due arene di ogni albero ISMCTS: circa 9 MB l'una */
+    private static final int NODI_ISMCTS = 1 << 18;
+    /** Strategia in modalità 4 giocatori: ISMCTS, o PIMC con -Dtresette.ai.strategia=pimc */
+    private static final boolean USA_PIMC = "pimc".equalsIgnoreCase(System.getProperty("tresette.ai.strategia"));
+    /** MB della tabella di trasposizione del risolutore, fuori dallo heap; configurabile con -Dtresette.tabella.mb */
+    private static final int MEGABYTE_TABELLA = Integer.getInteger("tresette.tabella.mb", 64);
+
+    private final GameEngine engine;
     private final Random random;
+    private RisolutoreCarteScoperte risolutore;
+    private volatile RisolutoreCarteScoperte.Risultato ultimoRisultato;
+    private StrategiaPIMC strategiaPIMC;
+    // Un albero per posto: il riuso tra due decisioni vale solo per chi l'ha costruito
+    private final StrategiaISMCTS[] strategieISMCTS = new StrategiaISMCTS[4];
     
-    public AIPlayer() {
+    /**
+     * @param engine il motore della partita giocata dall'AI
+     */
+    public AIPlayer(GameEngine engine) {
+        this.engine = engine;
         this.random = new Random();
     }
     
@@ -29,23 +63,90 @@ public class AIPlayer {
             return null;
         }
         
-        // Se non c'è un seme richiesto, può giocare qualsiasi carta
-        if (semeRichiesto == null) {
-            return scegliCartaCasuale(manoAI);
+        // Carte del seme richiesto se ne ha, altrimenti tutta la mano
+        long mosseLegali = GameRules.mosseLegali(CardSet.daCarte(manoAI), semeRichiesto);
+        return scegliCartaCasuale(mosseLegali);
+    }
+    
+    /**
+     * Sceglie la carta del giocatore di turno nella posizione indicata.
+     * In modalità 2 giocatori usa il risolutore a carte scoperte: quando restano
+     * al massimo {@value #CARTE_RISOLUZIONE_ESATTA} carte cerca senza limite di
+     * tempo e la scelta è ottima, prima è la migliore trovata entro il budget
+     * ({@link #getUltimoRisultato()} dice quale dei due casi). In modalità
+     * 4 giocatori usa ISMCTS, con un albero per ogni posto dell'AI, oppure la
+     * strategia PIMC se richiesta all'avvio. Lavora solo sulla posizione ricevuta, quindi
+     * può essere chiamato fuori dall'EDT. Le chiamate sono serializzate: se una
+     * ricerca abbandonata (ad esempio dopo una pausa) è ancora in corso, la
+     * successiva parte quando quella finisce.
+     * @param posizione la posizione corrente, ad esempio {@link StatoCompatto#da(GameEngine)}
+     * @param semiMancanti per ogni giocatore i semi che ha dimostrato di non avere, ad esempio da
+     *                     {@link TracciatoreCarte#copiaSemiMancanti()}; usati solo in modalità 4 giocatori
+     * @return la carta scelta dall'AI
+     */
+    public synchronized Carta scegliCarta(StatoCompatto posizione, int[] semiMancanti) {
+        if (posizione.getNumeroGiocatori() == 2) {
+            if (risolutore == null) {
+                risolutore = new RisolutoreCarteScoperte(2, new TabellaTrasposizioneOffHeap(MEGABYTE_TABELLA));
+            }
+            int carteRimanenti = CardSet.conta(posizione.getMano(0) | posizione.getMano(1));
+            long budget = carteRimanenti <= CARTE_RISOLUZIONE_ESATTA
+                ? RisolutoreCarteScoperte.SENZA_LIMITE : BUDGET_RISOLUTORE_MS;
+            RisolutoreCarteScoperte.Risultato risultato = risolutore.risolvi(posizione, budget);
+            ultimoRisultato = risultato;
+            return Carta.perOrdinale(risultato.getCarta());
         }
-        
-        // Filtra le carte del seme richiesto
-        List<Carta> carteSemeRichiesto = manoAI.stream()
-                .filter(carta -> carta.getSeme() == semeRichiesto)
-                .collect(Collectors.toList());
-        
-        // Se ha carte del seme richiesto, deve giocare una di quelle
-        if (!carteSemeRichiesto.isEmpty()) {
-            return scegliCartaDelSemeRichiesto(carteSemeRichiesto);
+        int thread = Runtime.getRuntime().availableProcessors();
+        if (USA_PIMC) {
+            if (strategiaPIMC == null) {
+                strategiaPIMC = new StrategiaPIMC(engine, BUDGET_4_GIOCATORI_MS, thread);
+            }
+            return Carta.perOrdinale(strategiaPIMC.scegliCarta(posizione, semiMancanti));
         }
-        
-        // Se non ha carte del seme richiesto, può giocare qualsiasi carta
-        return scegliCartaCasuale(manoAI);
+        int turno = posizione.getTurno();
+        if (strategieISMCTS[turno] == null) {
+            strategieISMCTS[turno] = new StrategiaISMCTS(engine, BUDGET_4_GIOCATORI_MS, thread, NODI_ISMCTS,
+                                                         new SplittableRandom());
+        }
+        return Carta.perOrdinale(strategieISMCTS[turno].scegliCarta(posizione, semiMancanti));
+    }
+    
+    /**
+     * Ferma i thread delle strategie ISMCTS e PIMC e lascia al garbage
+     * collector alberi e tabella fuori dallo heap del risolutore. Se l'AI deve scegliere ancora
+     * le strategie vengono ricreate alla prima chiamata; una ricerca in corso
+     * finisce prima della chiusura.
+     */
+    public synchronized void chiudi() {
+        if (strategiaPIMC != null) {
+            strategiaPIMC.chiudi();
+            strategiaPIMC = null;
+        }
+        for (int g = 0; g < strategieISMCTS.length; g++) {
+            if (strategieISMCTS[g] != null) {
+                strategieISMCTS[g].chiudi();
+                strategieISMCTS[g] = null;
+            }
+        }
+        risolutore = null;
+        ultimoRisultato = null;
+    }
+    
+    /**
+     * @return esito dell'ultima ricerca del risolutore in modalità 2 giocatori,
+     *         con {@link RisolutoreCarteScoperte.Risultato#isEsatto()}; null se non ha ancora cercato
+     */
+    public RisolutoreCarteScoperte.Risultato getUltimoRisultato() {
+        return ultimoRisultato;
+    }
+    
+    /**
+     * Sceglie una carta casuale tra quelle giocabili
+     * @param mosseLegali le carte giocabili come {@link CardSet}
+     * @return una carta scelta casualmente
+     */
+    private Carta scegliCartaCasuale(long mosseLegali) {
+        return CardSet.get(mosseLegali, random.nextInt(CardSet.conta(mosseLegali)));
     }
     
     /**
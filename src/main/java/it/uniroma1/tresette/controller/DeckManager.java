@@ -1,5 +1,6 @@
 package it.uniroma1.tresette.controller;
 
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Giocatore;
 import it.uniroma1.tresette.model.Seme;
@@ -9,40 +10,130 @@ import java.util.*;
 /**
  * Gestisce il mazzo di carte e la distribuzione ai giocatori.
  * Si occupa della creazione, mescolamento e distribuzione delle carte.
+ * <p>
+ * Ogni mazzata è determinata da un seme a 64 bit estratto da un
+ * {@link SplittableRandom}: lo stesso seme produce sempre la stessa
+ * distribuzione, così una mano può essere mostrata come ID, condivisa e rigiocata.
  */
 public class DeckManager {
     private final List<Carta> mazzo;
     private final List<Carta> carteGiocate;
+    // Viste di sola lettura create una volta: i lettori non copiano le liste
+    private final List<Carta> vistaMazzo;
+    private final List<Carta> vistaCarteGiocate;
+    private long carteGiocateBits;
     private final Carta[] cartePerPosizione;
     private final boolean modalitaDueGiocatori;
     private final int numeroGiocatori;
+    private final SplittableRandom generatore;
+    private long semeMazzata;
     
+    /**
+     * Crea un gestore del mazzo con mazzate non riproducibili tra un'esecuzione e l'altra
+     * @param modalitaDueGiocatori true per modalità 2 giocatori
+     */
     public DeckManager(boolean modalitaDueGiocatori) {
+        this(modalitaDueGiocatori, new SplittableRandom());
+    }
+    
+    /**
+     * Crea un gestore del mazzo la cui sequenza di mazzate dipende solo dal seme
+     * @param modalitaDueGiocatori true per modalità 2 giocatori
+     * @param seme seme del generatore delle mazzate
+     */
+    public DeckManager(boolean modalitaDueGiocatori, long seme) {
+        this(modalitaDueGiocatori, new SplittableRandom(seme));
+    }
+    
+    /**
+     * Crea un gestore del mazzo con un generatore dato, ad esempio ottenuto con
+     * {@link SplittableRandom#split()} per dare flussi indipendenti a più thread
+     * @param modalitaDueGiocatori true per modalità 2 giocatori
+     * @param generatore generatore dei semi delle mazzate
+     */
+    public DeckManager(boolean modalitaDueGiocatori, SplittableRandom generatore) {
+        this.generatore = generatore;
         this.modalitaDueGiocatori = modalitaDueGiocatori;
         this.numeroGiocatori = modalitaDueGiocatori ? 2 : 4;
         this.mazzo = new ArrayList<>();
         this.carteGiocate = new ArrayList<>();
+        this.vistaMazzo = Collections.unmodifiableList(mazzo);
+        this.vistaCarteGiocate = Collections.unmodifiableList(carteGiocate);
         this.cartePerPosizione = new Carta[4]; // Massimo 4 giocatori
     }
     
     /**
      * Crea un mazzo completo di carte
-     * Per ogni seme crea le carte da 1 a 10
+     * Riusa le 40 carte canoniche, senza allocare nuove istanze
      */
     public void creaMazzo() {
         mazzo.clear();
-        for (Seme seme : Seme.values()) {
-            for (int valore = 1; valore <= 10; valore++) {
-                mazzo.add(new Carta(valore, seme));
-            }
-        }
+        mazzo.addAll(Carta.mazzoCompleto());
     }
     
     /**
-     * Mescola il mazzo di carte
+     * Mescola il mazzo di carte con un nuovo seme estratto dal generatore
      */
     public void mescolaMazzo() {
-        Collections.shuffle(mazzo);
+        mescolaMazzo(generatore.nextLong());
+    }
+    
+    /**
+     * Mescola il mazzo in modo deterministico (Fisher-Yates) a partire dal seme,
+     * per rigiocare una mazzata nota
+     * @param seme seme della mazzata, vedi {@link #getSemeMazzata()}
+     */
+    public void mescolaMazzo(long seme) {
+        semeMazzata = seme;
+        SplittableRandom random = new SplittableRandom(seme);
+        for (int i = mazzo.size() - 1; i > 0; i--) {
+            Collections.swap(mazzo, i, random.nextInt(i + 1));
+        }
+    }
+    
+    /**
+     * Calcola le mani distribuite da una mazzata senza creare carte o liste:
+     * stesso mescolamento di {@link #mescolaMazzo(long)} e stesso ordine di
+     * distribuzione di {@link #distribuisciCarte(Giocatore[])}
+     * @param seme seme della mazzata
+     * @param mani array di destinazione, una mano per giocatore (2 o 4)
+     */
+    public static void maniDaSeme(long seme, long[] mani) {
+        int numeroGiocatori = mani.length;
+        int[] ordine = new int[Carta.NUMERO_CARTE];
+        for (int i = 0; i < ordine.length; i++) {
+            ordine[i] = i;
+        }
+        SplittableRandom random = new SplittableRandom(seme);
+        for (int i = ordine.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = ordine[i];
+            ordine[i] = ordine[j];
+            ordine[j] = tmp;
+        }
+        Arrays.fill(mani, CardSet.VUOTO);
+        for (int i = 0; i < ordine.length; i++) {
+            mani[i % numeroGiocatori] |= 1L << ordine[i];
+        }
+    }
+    
+    /**
+     * Converte il seme di una mazzata nel suo ID testuale (16 cifre esadecimali)
+     * @param seme seme della mazzata
+     * @return ID della mazzata
+     */
+    public static String idMazzata(long seme) {
+        return String.format("%016x", seme);
+    }
+    
+    /**
+     * Ricava il seme di una mazzata dal suo ID testuale
+     * @param id ID della mazzata, come prodotto da {@link #idMazzata(long)}
+     * @return seme della mazzata
+     * @throws NumberFormatException se l'ID non è valido
+     */
+    public static long semeDaIdMazzata(String id) {
+        return Long.parseUnsignedLong(id.trim(), 16);
     }
     
     /**
@@ -71,6 +162,7 @@ public class DeckManager {
      */
     public void aggiungiCartaGiocata(Carta carta, int posizione) {
         carteGiocate.add(carta);
+        carteGiocateBits = CardSet.aggiungi(carteGiocateBits, carta);
         if (posizione >= 0 && posizione < cartePerPosizione.length) {
             cartePerPosizione[posizione] = carta;
         }
@@ -81,6 +173,7 @@ public class DeckManager {
      */
     public void pulisciCarteGiocate() {
         carteGiocate.clear();
+        carteGiocateBits = CardSet.VUOTO;
         Arrays.fill(cartePerPosizione, null);
     }
     
@@ -104,28 +197,52 @@ public class DeckManager {
      * @return true se la carta è giocabile
      */
     public boolean isCartaGiocabile(Carta carta, Giocatore giocatore, Seme semeRichiesto) {
-        // Se non c'è seme richiesto (prima carta della mano), qualsiasi carta è valida
-        if (semeRichiesto == null) {
-            return true;
-        }
-        
-        // Se la carta è del seme richiesto, è sempre giocabile
-        if (carta.getSeme() == semeRichiesto) {
-            return true;
-        }
-        
-        // Se la carta non è del seme richiesto, controlla se il giocatore ha carte di quel seme
-        return giocatore.getMano().stream()
-                .noneMatch(c -> c.getSeme() == semeRichiesto);
+        return CardSet.contiene(getMosseLegali(giocatore, semeRichiesto), carta);
+    }
+    
+    /**
+     * Calcola in un solo passo tutte le carte giocabili da un giocatore
+     * @param giocatore il giocatore di cui valutare la mano
+     * @param semeRichiesto il seme richiesto per questa mano (null se prima carta)
+     * @return le carte giocabili come {@link CardSet}
+     */
+    public long getMosseLegali(Giocatore giocatore, Seme semeRichiesto) {
+        return GameRules.mosseLegali(giocatore.getManoBits(), semeRichiesto);
     }
     
     // Getters
+    
+    /** @return vista di sola lettura del mazzo, aggiornata senza copie */
     public List<Carta> getMazzo() { 
-        return new ArrayList<>(mazzo); 
+        return vistaMazzo; 
     }
     
+    /** @return vista di sola lettura delle carte giocate nella presa corrente, in ordine di gioco */
     public List<Carta> getCarteGiocate() { 
-        return new ArrayList<>(carteGiocate); 
+        return vistaCarteGiocate; 
+    }
+    
+    /**
+     * @param indice posizione nell'ordine di gioco della presa corrente
+     * @return la carta giocata in quella posizione
+     */
+    public Carta getCartaGiocata(int indice) {
+        return carteGiocate.get(indice);
+    }
+    
+    /** @return carte giocate nella presa corrente come {@link CardSet} */
+    public long getCarteGiocateBits() {
+        return carteGiocateBits;
+    }
+    
+    /** @return seme dell'ultima mazzata, per riprodurla con {@link #mescolaMazzo(long)} */
+    public long getSemeMazzata() {
+        return semeMazzata;
+    }
+    
+    /** @return ID testuale dell'ultima mazzata */
+    public String getIdMazzata() {
+        return idMazzata(semeMazzata);
     }
     
     /** @return numero di carte attualmente giocate */
@@ -1,30 +1,50 @@
 package it.uniroma1.tresette.controller;
 
+import it.uniroma1.tresette.controller.ai.RisolutoreCarteScoperte;
+import it.uniroma1.tresette.controller.ai.TracciatoreCarte;
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Seme;
 import it.uniroma1.tresette.model.Giocatore;
 import it.uniroma1.tresette.model.observer.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Controller principale del gioco di Tresette.
- * Coordina le varie componenti del gioco mantenendo la responsabilità di orchestrazione.
+ * Adatta il {@link GameEngine} all'interfaccia Swing: le regole sono applicate dal motore,
+ * mentre il controller gestisce tempi di attesa, turni dell'AI, notifiche e aggiornamento della view.
  */
 public class GameController {
     
+    /** Attesa minima prima che l'AI giochi, in millisecondi */
+    private static final int ATTESA_AI_MS = 1500;
+    /** Intervallo dei controlli successivi se la scelta dell'AI non è ancora pronta */
+    private static final int RICONTROLLO_AI_MS = 50;
+    
     // Componenti del gioco
+    private final GameEngine engine;
     private final GameStateManager gameState;
     private final DeckManager deckManager;
-    private final ScoreCalculator scoreCalculator;
     private final TurnManager turnManager;
     private final AIPlayer aiPlayer;
+    private final TracciatoreCarte tracciatore;
+    // Thread dedicato alle ricerche dell'AI: le strategie vi restano bloccate finché i loro worker finiscono
+    private final ExecutorService esecutoreAI;
     
     // Riferimenti necessari
     private final Giocatore[] giocatori;
     private final GameStateObservable gameObservable;
     private final GameView view;
     
+    // Ultima fotografia pubblicata: letta senza lock da view e thread AI
+    private volatile GameSnapshot snapshot;
+    private long versioneSnapshot;
+    
     /**
      * Costruttore del controller del gioco (modalità 4 giocatori)
      * 
@@ -52,52 +72,42 @@ public class GameController {
         this.gameObservable = gameObservable;
         this.view = view;
         
-        // Inizializza i componenti
-        this.gameState = new GameStateManager(modalitaDueGiocatori, punteggioVittoria);
-        this.deckManager = new DeckManager(modalitaDueGiocatori);
-        this.scoreCalculator = new ScoreCalculator(modalitaDueGiocatori);
+        // Inizializza i componenti: le regole sono delegate al motore di gioco
+        this.engine = new GameEngine(nomeGiocatore, punteggioVittoria, modalitaDueGiocatori);
+        this.gameState = engine.getGameState();
+        this.deckManager = engine.getDeckManager();
         this.turnManager = new TurnManager(gameObservable, view);
-        this.aiPlayer = new AIPlayer();
-        
-        // Inizializza i giocatori
-        this.giocatori = inizializzaGiocatori(nomeGiocatore, modalitaDueGiocatori);
+        this.aiPlayer = new AIPlayer(engine);
+        this.esecutoreAI = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "tresette-ai");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.giocatori = engine.getGiocatori();
+        // Semi mancanti osservati durante la mano, per le mazzate campionate dall'AI
+        this.tracciatore = new TracciatoreCarte(giocatori.length);
+        gameObservable.addObserver(tracciatore);
+        pubblicaSnapshot();
     }
     
     /**
-     * Inizializza l'array dei giocatori in base alla modalità
+     * Pubblica una nuova fotografia immutabile dello stato corrente.
+     * Va chiamato sul thread del controller dopo ogni modifica dello stato di gioco.
      */
-    private Giocatore[] inizializzaGiocatori(String nomeGiocatore, boolean modalitaDueGiocatori) {
-        if (modalitaDueGiocatori) {
-            return new Giocatore[] {
-                new Giocatore(nomeGiocatore, true),
-                new Giocatore("Marcovaldo", false)
-            };
-        } else {
-            return new Giocatore[] {
-                new Giocatore(nomeGiocatore, true),
-                new Giocatore("Marcovaldo", false),
-                new Giocatore("Viligelmo", false),
-                new Giocatore("Astolfo", false)
-            };
-        }
+    private void pubblicaSnapshot() {
+        snapshot = GameSnapshot.da(engine, ++versioneSnapshot);
     }
 
     /**
      * Inizia una nuova partita
      */
     public void nuovaPartita() {
-        gameState.reset();
-        
-        // Pulisce le carte dei giocatori
-        for (Giocatore giocatore : giocatori) {
-            giocatore.azzeraCarte();
-        }
-        
-        deckManager.pulisciCarteGiocate();
+        engine.nuovaPartita();
+        pubblicaSnapshot();
         
         gameObservable.notifyGameStateChanged(GameState.NON_INIZIATO);
         view.log("=== NUOVA PARTITA ===");
-        view.log("Punteggio per vincere: " + (int)gameState.getPunteggioVittoria() + " punti");
+        view.log("Punteggio per vincere: " + gameState.getPunteggioVittoria() + " punti");
         
         // Log dei giocatori
         if (gameState.isModalitaDueGiocatori()) {
@@ -117,28 +127,16 @@ public class GameController {
      * Inizia una nuova mano di gioco
      */
     private void iniziaNuovaMano() {
-        gameState.setMano(gameState.getMano() + 1);
-        view.log("\n=== MANO " + gameState.getMano() + " ===");
-        
         // Distribuzione delle carte
-        distribuisciCarte();
-        
-        gameState.setGiocoInCorso(true);
-        turnManager.iniziaTurno(giocatori, gameState);
-    }
-
-    /**
-     * Distribuisce le carte ai giocatori
-     */
-    private void distribuisciCarte() {
         gameObservable.notifyGameStateChanged(GameState.DISTRIBUZIONE_CARTE);
-        
-        deckManager.creaMazzo();
-        deckManager.mescolaMazzo();
-        deckManager.distribuisciCarte(giocatori);
+        engine.iniziaNuovaMano();
+        pubblicaSnapshot();
+        view.log("\n=== MANO " + gameState.getMano() + " (mazzata " + deckManager.getIdMazzata() + ") ===");
         
         view.aggiornaManiGiocatori();
         view.aggiornaInterfaccia();
+        
+        turnManager.iniziaTurno(giocatori, gameState);
     }
 
     /**
@@ -153,7 +151,7 @@ public class GameController {
             return false;
         }
         
-        Giocatore giocatoreCorrente = turnManager.getGiocatoreCorrente(giocatori, gameState);
+        Giocatore giocatoreCorrente = engine.getGiocatoreCorrente();
         
         if (!giocatoreCorrente.isUmano() || indiceCarta < 0 || 
             indiceCarta >= giocatoreCorrente.getMano().size()) {
@@ -163,84 +161,32 @@ public class GameController {
         Carta carta = giocatoreCorrente.getMano().get(indiceCarta);
         
         // Controlla se la carta è giocabile secondo le regole
-        if (!deckManager.isCartaGiocabile(carta, giocatoreCorrente, gameState.getSemeRichiesto())) {
+        if (!engine.isCartaGiocabile(carta)) {
             view.log("Non puoi giocare questa carta! Devi seguire il seme se possibile.");
             return false;
         }
         
-        return eseguiGiocataCarta(carta);
+        return eseguiGiocataCarta(carta, false);
     }
     
     /**
      * Esegue effettivamente il gioco di una carta
+     * 
+     * @param carta la carta da giocare
+     * @param giocataAI true se la carta è stata scelta dall'AI: il turno AI successivo
+     *                  viene programmato con un piccolo ritardo per evitare ricorsione immediata
      */
-    private boolean eseguiGiocataCarta(Carta carta) {
+    private boolean eseguiGiocataCarta(Carta carta, boolean giocataAI) {
         if (gameState.isValutazioneInCorso()) {
             return false;
         }
         
-        Giocatore giocatoreCorrente = turnManager.getGiocatoreCorrente(giocatori, gameState);
-        
-        // Rimuove la carta dalla mano del giocatore
-        giocatoreCorrente.rimuoviCarta(carta);
-        
-        // Se è la prima carta della mano, imposta il seme richiesto
-        if (deckManager.getNumeroCarteGiocate() == 0) {
-            gameState.setSemeRichiesto(carta.getSeme());
-        }
-        
-        // Aggiunge la carta alle carte giocate
-        deckManager.aggiungiCartaGiocata(carta, gameState.getGiocatoreCorrente());
-        gameState.incrementaCarteGiocateInMano();
-        
-        // Notifica l'evento
-        gameObservable.notifyCartaGiocata(carta, giocatoreCorrente.getNome());
-        
-        // Aggiorna immediatamente la vista
-        view.aggiornaCarteGiocate();
-        view.aggiornaManiGiocatori();
-        
-        // Controlla se la mano è finita
-        if (deckManager.getNumeroCarteGiocate() == gameState.getNumeroGiocatori()) {
+        Giocatore giocatoreCorrente = engine.getGiocatoreCorrente();
+        boolean presaCompleta = engine.giocaCarta(carta);
+        if (presaCompleta) {
             gameState.setValutazioneInCorso(true);
-            view.aggiornaCarteGiocate();
-            gameObservable.notifyGameStateChanged(GameState.VALUTAZIONE_MANO);
-            valutaMano();
-        } else {
-            // Passa al giocatore successivo
-            turnManager.gestisciCambioTurno(giocatori, gameState);
-            
-            // Se è il turno dell'AI, esegui automaticamente
-            if (!turnManager.isGiocatoreCorrenteUmano(giocatori, gameState)) {
-                eseguiTurnoAI();
-            }
-        }
-        
-        return true;
-    }
-    
-    /**
-     * Esegue il gioco di una carta senza chiamare ricorsivamente eseguiTurnoAI()
-     * Usato internamente per evitare loop nell'AI
-     */
-    private boolean eseguiGiocataCartaInterna(Carta carta) {
-        if (gameState.isValutazioneInCorso()) {
-            return false;
-        }
-        
-        Giocatore giocatoreCorrente = turnManager.getGiocatoreCorrente(giocatori, gameState);
-        
-        // Rimuove la carta dalla mano del giocatore
-        giocatoreCorrente.rimuoviCarta(carta);
-        
-        // Se è la prima carta della mano, imposta il seme richiesto
-        if (deckManager.getNumeroCarteGiocate() == 0) {
-            gameState.setSemeRichiesto(carta.getSeme());
         }
-        
-        // Aggiunge la carta alle carte giocate
-        deckManager.aggiungiCartaGiocata(carta, gameState.getGiocatoreCorrente());
-        gameState.incrementaCarteGiocateInMano();
+        pubblicaSnapshot();
         
         // Notifica l'evento
         gameObservable.notifyCartaGiocata(carta, giocatoreCorrente.getNome());
@@ -250,26 +196,28 @@ public class GameController {
         view.aggiornaManiGiocatori();
         
         // Controlla se la mano è finita
-        if (deckManager.getNumeroCarteGiocate() == gameState.getNumeroGiocatori()) {
-            gameState.setValutazioneInCorso(true);
+        if (presaCompleta) {
             view.aggiornaCarteGiocate();
             gameObservable.notifyGameStateChanged(GameState.VALUTAZIONE_MANO);
             valutaMano();
         } else {
-            // Passa al giocatore successivo
-            turnManager.gestisciCambioTurno(giocatori, gameState);
+            // Il motore ha già passato il turno al giocatore successivo
+            turnManager.annunciaTurno(giocatori, gameState);
             
-            // Se è il turno dell'AI, esegui automaticamente ma con un timer per evitare ricorsione immediata
             if (!turnManager.isGiocatoreCorrenteUmano(giocatori, gameState)) {
-                // Programma il prossimo turno AI con un piccolo delay
-                javax.swing.Timer nextAITimer = new javax.swing.Timer(500, e -> {
-                    if (gameState.isGiocoInCorso() && !gameState.isValutazioneInCorso() && 
-                        !gameState.isAiInEsecuzione() && !gameState.isGiocoInPausa()) {
-                        eseguiTurnoAI();
-                    }
-                });
-                nextAITimer.setRepeats(false);
-                nextAITimer.start();
+                if (giocataAI) {
+                    // Programma il prossimo turno AI con un piccolo delay
+                    javax.swing.Timer nextAITimer = new javax.swing.Timer(500, e -> {
+                        if (gameState.isGiocoInCorso() && !gameState.isValutazioneInCorso() && 
+                            !gameState.isAiInEsecuzione() && !gameState.isGiocoInPausa()) {
+                            eseguiTurnoAI();
+                        }
+                    });
+                    nextAITimer.setRepeats(false);
+                    nextAITimer.start();
+                } else {
+                    eseguiTurnoAI();
+                }
             }
         }
         
@@ -280,34 +228,52 @@ public class GameController {
      * Gestisce il turno dell'AI
      */
     private void eseguiTurnoAI() {
-        // Verifica che l'AI non sia già in esecuzione o che il gioco sia in pausa
-        if (gameState.isAiInEsecuzione() || gameState.isGiocoInPausa()) {
+        // Verifica che l'AI non sia già in esecuzione, che il gioco non sia in pausa o il controller chiuso
+        if (gameState.isAiInEsecuzione() || gameState.isGiocoInPausa() || esecutoreAI.isShutdown()) {
             return;
         }
         
         gameState.setAiInEsecuzione(true);
         
-        // Usa un Timer invece di Thread.sleep per non bloccare l'UI
-        javax.swing.Timer aiTimer = new javax.swing.Timer(1500, e -> {
+        // L'AI ragiona in background su una copia della posizione mentre la UI attende
+        StatoCompatto posizione = StatoCompatto.da(engine);
+        int[] semiMancanti = tracciatore.copiaSemiMancanti();
+        CompletableFuture<Carta> scelta = CompletableFuture.supplyAsync(
+            () -> aiPlayer.scegliCarta(posizione, semiMancanti), esecutoreAI);
+        
+        // Usa un Timer invece di Thread.sleep per non bloccare l'UI: la carta si gioca
+        // dopo l'attesa minima e solo a ricerca conclusa, senza mai aspettarla sull'EDT
+        javax.swing.Timer aiTimer = new javax.swing.Timer(ATTESA_AI_MS, null);
+        aiTimer.addActionListener(e -> {
+            if (!scelta.isDone() && gameState.isGiocoInCorso() && !gameState.isValutazioneInCorso()
+                    && !gameState.isGiocoInPausa()) {
+                aiTimer.setInitialDelay(RICONTROLLO_AI_MS);
+                aiTimer.restart();
+                return;
+            }
             try {
                 // Controlla di nuovo se il gioco è in pausa prima di eseguire
                 if (!gameState.isGiocoInCorso() || gameState.isValutazioneInCorso() || gameState.isGiocoInPausa()) {
                     return;
                 }
                 
-                Giocatore aiGiocatore = turnManager.getGiocatoreCorrente(giocatori, gameState);
+                Giocatore aiGiocatore = engine.getGiocatoreCorrente();
                 
-                // Strategia AI che rispetta le regole del seme
-                Carta cartaScelta = aiPlayer.scegliCarta(aiGiocatore.getMano(), gameState.getSemeRichiesto());
+                // Strategia AI che rispetta le regole del seme; se la ricerca è fallita o la
+                // scelta non è più valida ripiega su una carta casuale tra quelle giocabili
+                Carta cartaScelta = scelta.isCompletedExceptionally() ? null : scelta.getNow(null);
+                if (cartaScelta == null || !engine.isCartaGiocabile(cartaScelta)) {
+                    cartaScelta = aiPlayer.scegliCarta(aiGiocatore.getMano(), gameState.getSemeRichiesto());
+                }
                 
                 if (cartaScelta != null) {
-                    // Chiama il metodo interno per evitare ricorsione
-                    eseguiGiocataCartaInterna(cartaScelta);
+                    logRisultatoRisolutore(cartaScelta);
+                    eseguiGiocataCarta(cartaScelta, true);
                 } else {
                     view.log("ERRORE: AI non riesce a scegliere una carta valida!");
                     // Prova a scegliere la prima carta disponibile come fallback
                     if (!aiGiocatore.getMano().isEmpty()) {
-                        eseguiGiocataCartaInterna(aiGiocatore.getMano().get(0));
+                        eseguiGiocataCarta(aiGiocatore.getMano().get(0), true);
                     }
                 }
             } catch (Exception ex) {
@@ -323,77 +289,47 @@ public class GameController {
         aiTimer.start();
     }
 
+    /**
+     * In modalità 2 giocatori riporta nel log se la carta dell'AI viene da una
+     * risoluzione esatta o da una stima entro il budget
+     * @param cartaScelta la carta che l'AI sta per giocare
+     */
+    private void logRisultatoRisolutore(Carta cartaScelta) {
+        RisolutoreCarteScoperte.Risultato risultato = aiPlayer.getUltimoRisultato();
+        if (giocatori.length == 2 && risultato != null && risultato.getCarta() == cartaScelta.getOrdinale()) {
+            view.log("Risolutore: " + risultato);
+        }
+    }
+
     /**
      * Valuta la mano appena giocata e determina il vincitore
      */
     private void valutaMano() {
-        if (deckManager.getNumeroCarteGiocate() != gameState.getNumeroGiocatori()) {
+        if (!engine.isPresaCompleta()) {
             return;
         }
         
-        gameState.incrementaGiocata();
-        
-        // Determina il vincitore della mano
-        int vincitore = scoreCalculator.determinaVincitoreMano(
-            deckManager.getCarteGiocate(), 
-            gameState.getPrimoGiocatoreMano(), 
-            gameState.getSemeRichiesto()
-        );
-        
-        // Calcola i punti della mano
-        double puntiMano = scoreCalculator.calcolaPuntiMano(deckManager.getCarteGiocate());
-        
-        // Assegna le carte al vincitore
-        for (Carta carta : deckManager.getCarteGiocate()) {
-            giocatori[vincitore].getCartePrese().add(carta);
-        }
-        
-        // Controlla se è l'ultima giocata
-        boolean isUltimaGiocata = scoreCalculator.isUltimaGiocata(gameState.getGiocata());
-        if (isUltimaGiocata) {
-            // Assegna punti bonus per l'ultima presa
-            if (gameState.isModalitaDueGiocatori()) {
-                if (vincitore == 0) {
-                    gameState.setPuntiBonus1(gameState.getPuntiBonus1() + 1);
-                } else {
-                    gameState.setPuntiBonus2(gameState.getPuntiBonus2() + 1);
-                }
-            } else {
-                if (vincitore == 0 || vincitore == 2) {
-                    gameState.setPuntiBonus1(gameState.getPuntiBonus1() + 1);
-                } else {
-                    gameState.setPuntiBonus2(gameState.getPuntiBonus2() + 1);
-                }
-            }
-        }
-        
-        gameObservable.notifyFineMano(giocatori[vincitore].getNome(), puntiMano);
+        int vincitore = engine.valutaPresa();
+        pubblicaSnapshot();
         
-        // Aggiorna i punteggi
-        scoreCalculator.aggiornaPunteggi(giocatori, gameState);
+        gameObservable.notifyFineMano(giocatori[vincitore].getNome(), engine.getTerziUltimaPresa() / 3.0);
         
         // Aggiorna immediatamente i punteggi nella view
         view.aggiornaPunteggi(gameState.getPunteggioCoppia1Totale(), gameState.getPunteggioCoppia2Totale());
         
-        // Prepara la nuova mano
-        turnManager.preparaNuovaMano(vincitore, gameState);
-        
-        // Azzera immediatamente il seme richiesto
-        gameState.setSemeRichiesto(null);
-        
         // Aspetta 2 secondi prima di continuare
         javax.swing.Timer timer = new javax.swing.Timer(2000, e -> {
             gameState.setValutazioneInCorso(false);
             
             // Pulisci le carte dal tavolo
-            deckManager.pulisciCarteGiocate();
+            engine.chiudiPresa();
+            pubblicaSnapshot();
             view.aggiornaCarteGiocate(); // Importante: aggiorna la vista per nascondere le carte
             
             // Controlla se ci sono ancora carte da giocare
-            if (giocatori[0].getMano().isEmpty()) {
+            if (engine.isManoTerminata()) {
                 controllaFinePartita();
             } else {
-                gameState.setGiocatoreCorrente(gameState.getPrimoGiocatoreMano());
                 turnManager.iniziaTurno(giocatori, gameState);
                 
                 if (!turnManager.isGiocatoreCorrenteUmano(giocatori, gameState)) {
@@ -405,18 +341,30 @@ public class GameController {
         timer.start();
     }
 
+    /**
+     * Chiude il controller quando la partita viene abbandonata: ferma il gioco
+     * e rilascia thread e tabelle dell'AI dopo l'eventuale ricerca in corso,
+     * senza aspettarla. Il controller non è più utilizzabile.
+     */
+    public void chiudi() {
+        gameState.setGiocoInCorso(false);
+        gameObservable.removeObserver(tracciatore);
+        if (!esecutoreAI.isShutdown()) {
+            esecutoreAI.execute(aiPlayer::chiudi);
+            esecutoreAI.shutdown();
+        }
+    }
+
     /**
      * Controlla se la partita è finita
      */
     private void controllaFinePartita() {
-        if (gameState.isVittoriaRaggiunta()) {
+        if (engine.isVittoriaRaggiunta()) {
             gameState.setGiocoInCorso(false);
+            pubblicaSnapshot();
             String vincitore = gameState.getVincitorePartita();
-            
-            // Aggiorna le statistiche (se necessario)
-            if (gameState.isModalitaDueGiocatori()) {
-                // Le statistiche potrebbero essere gestite in futuro
-            }
+            // Thread e tabelle dell'AI non servono più; una nuova partita li ricrea
+            esecutoreAI.execute(aiPlayer::chiudi);
             
             view.mostraVittoria("Partita terminata! Vincitore: " + vincitore);
         } else {
@@ -431,6 +379,7 @@ public class GameController {
     public void togglePausa() {
         if (gameState.isGiocoInCorso()) {
             gameState.setGiocoInPausa(!gameState.isGiocoInPausa());
+            pubblicaSnapshot();
             
             // Notifica il cambio di stato per i suoni
             gameObservable.notifyPausaToggled(gameState.isGiocoInPausa());
@@ -459,6 +408,17 @@ public class GameController {
     
     // Getters per la view
     
+    /**
+     * Restituisce l'ultima fotografia pubblicata dello stato di gioco.
+     * Sicuro da qualunque thread: la fotografia è immutabile e sostituita
+     * in blocco dopo ogni mossa.
+     * 
+     * @return fotografia immutabile dello stato corrente
+     */
+    public GameSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
     /**
      * Restituisce l'array dei giocatori della partita
      * 
@@ -477,10 +437,19 @@ public class GameController {
         return gameState.getNumeroGiocatori();
     }
     
+    /**
+     * Restituisce l'ID della mazzata corrente, da mostrare o usare per rigiocare la mano
+     * 
+     * @return ID testuale della mazzata
+     */
+    public String getIdMazzata() {
+        return deckManager.getIdMazzata();
+    }
+    
     /**
      * Restituisce la lista delle carte giocate nella mano corrente
      * 
-     * @return lista delle carte giocate
+     * @return vista di sola lettura delle carte giocate, da non conservare tra una presa e l'altra
      */
     public List<Carta> getCarteGiocate() {
         return deckManager.getCarteGiocate();
@@ -546,9 +515,19 @@ public class GameController {
      * @return true se la carta è giocabile
      */
     public boolean isCartaGiocabile(Carta carta, int indiceGiocatore) {
+        return CardSet.contiene(getMosseLegali(indiceGiocatore), carta);
+    }
+    
+    /**
+     * Calcola in un solo passo le carte giocabili da un giocatore
+     * 
+     * @param indiceGiocatore l'indice del giocatore
+     * @return le carte giocabili come {@link CardSet}, vuoto se l'indice non è valido
+     */
+    public long getMosseLegali(int indiceGiocatore) {
         if (indiceGiocatore < 0 || indiceGiocatore >= giocatori.length) {
-            return false;
+            return CardSet.VUOTO;
         }
-        return deckManager.isCartaGiocabile(carta, giocatori[indiceGiocatore], gameState.getSemeRichiesto());
+        return deckManager.getMosseLegali(giocatori[indiceGiocatore], gameState.getSemeRichiesto());
     }
 }
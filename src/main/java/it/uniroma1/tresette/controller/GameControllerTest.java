@@ -16,8 +16,8 @@ public class GameControllerTest {
         }
 
         @Override
-        public void aggiornaPunteggi(double punteggioCoppia1, double punteggioCoppia2) {
-            System.out.printf("TEST: aggiornaPunteggi(%.1f, %.1f)%n", punteggioCoppia1, punteggioCoppia2);
+        public void aggiornaPunteggi(int punteggioCoppia1, int punteggioCoppia2) {
+            System.out.printf("TEST: aggiornaPunteggi(%d, %d)%n", punteggioCoppia1, punteggioCoppia2);
         }
 
         @Override
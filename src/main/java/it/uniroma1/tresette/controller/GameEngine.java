@@ -0,0 +1,290 @@
+package it.uniroma1.tresette.controller;
+
+import it.uniroma1.tresette.controller.ai.AIStrategy;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Giocatore;
+import it.uniroma1.tresette.model.Seme;
+
+import java.util.List;
+
+/**
+ * Motore di gioco del Tresette indipendente dall'interfaccia grafica.
+ * Applica le regole della partita (distribuzione, giocate, prese e punteggi)
+ * in modo sincrono, senza timer, observer o riferimenti alla view.
+ * Il {@link GameController} lo usa come nucleo e aggiunge solo tempi di attesa
+ * e notifiche; simulazioni e valutazioni dell'AI possono usarlo direttamente.
+ */
+public class GameEngine {
+
+    private final GameStateManager gameState;
+    private final DeckManager deckManager;
+    private final ScoreCalculator scoreCalculator;
+    private final Giocatore[] giocatori;
+
+    private int terziUltimaPresa;
+
+    /**
+     * Costruttore del motore di gioco
+     *
+     * @param nomeGiocatore nome del giocatore umano (posizione 0)
+     * @param punteggioVittoria punteggio necessario per vincere la partita
+     * @param modalitaDueGiocatori true per modalità 2 giocatori, false per 4 giocatori
+     */
+    public GameEngine(String nomeGiocatore, int punteggioVittoria, boolean modalitaDueGiocatori) {
+        this(nomeGiocatore, punteggioVittoria, new DeckManager(modalitaDueGiocatori));
+    }
+
+    /**
+     * Costruttore con mazzate riproducibili: la sequenza delle mani dipende solo dal seme
+     *
+     * @param nomeGiocatore nome del giocatore umano (posizione 0)
+     * @param punteggioVittoria punteggio necessario per vincere la partita
+     * @param modalitaDueGiocatori true per modalità 2 giocatori, false per 4 giocatori
+     * @param seme seme del generatore delle mazzate
+     */
+    public GameEngine(String nomeGiocatore, int punteggioVittoria, boolean modalitaDueGiocatori, long seme) {
+        this(nomeGiocatore, punteggioVittoria, new DeckManager(modalitaDueGiocatori, seme));
+    }
+
+    private GameEngine(String nomeGiocatore, int punteggioVittoria, DeckManager deckManager) {
+        boolean modalitaDueGiocatori = deckManager.isModalitaDueGiocatori();
+        this.gameState = new GameStateManager(modalitaDueGiocatori, punteggioVittoria);
+        this.deckManager = deckManager;
+        this.scoreCalculator = new ScoreCalculator(modalitaDueGiocatori);
+        this.giocatori = inizializzaGiocatori(nomeGiocatore, modalitaDueGiocatori);
+    }
+
+    /**
+     * Inizializza l'array dei giocatori in base alla modalità
+     */
+    private Giocatore[] inizializzaGiocatori(String nomeGiocatore, boolean modalitaDueGiocatori) {
+        if (modalitaDueGiocatori) {
+            return new Giocatore[] {
+                new Giocatore(nomeGiocatore, true),
+                new Giocatore("Marcovaldo", false)
+            };
+        } else {
+            return new Giocatore[] {
+                new Giocatore(nomeGiocatore, true),
+                new Giocatore("Marcovaldo", false),
+                new Giocatore("Viligelmo", false),
+                new Giocatore("Astolfo", false)
+            };
+        }
+    }
+
+    /**
+     * Azzera stato, punteggi e carte per iniziare una nuova partita
+     */
+    public void nuovaPartita() {
+        gameState.reset();
+        for (Giocatore giocatore : giocatori) {
+            giocatore.azzeraCarte();
+        }
+        deckManager.pulisciCarteGiocate();
+    }
+
+    /**
+     * Inizia una nuova mano: crea, mescola e distribuisce il mazzo.
+     * Il primo a giocare è il vincitore dell'ultima presa della mano precedente.
+     */
+    public void iniziaNuovaMano() {
+        preparaMano();
+        deckManager.mescolaMazzo();
+        distribuisci();
+    }
+
+    /**
+     * Inizia una nuova mano con una mazzata nota, ad esempio per rigiocarla
+     *
+     * @param semeMazzata seme della mazzata, vedi {@link DeckManager#getSemeMazzata()}
+     */
+    public void iniziaNuovaMano(long semeMazzata) {
+        preparaMano();
+        deckManager.mescolaMazzo(semeMazzata);
+        distribuisci();
+    }
+
+    private void preparaMano() {
+        gameState.setMano(gameState.getMano() + 1);
+        gameState.resetGiocata();
+
+        // Le carte prese nella mano precedente sono già conteggiate nei punteggi totali
+        for (Giocatore giocatore : giocatori) {
+            giocatore.azzeraCarte();
+        }
+
+        deckManager.creaMazzo();
+    }
+
+    private void distribuisci() {
+        deckManager.distribuisciCarte(giocatori);
+
+        gameState.setGiocoInCorso(true);
+        gameState.setGiocatoreCorrente(gameState.getPrimoGiocatoreMano());
+    }
+
+    /**
+     * Controlla se il giocatore corrente può giocare la carta indicata
+     *
+     * @param carta la carta da controllare
+     * @return true se la carta è giocabile
+     */
+    public boolean isCartaGiocabile(Carta carta) {
+        return CardSet.contiene(getMosseLegali(), carta);
+    }
+
+    /** @return carte giocabili dal giocatore corrente come {@link CardSet} */
+    public long getMosseLegali() {
+        return deckManager.getMosseLegali(getGiocatoreCorrente(), gameState.getSemeRichiesto());
+    }
+
+    /**
+     * Fa giocare una carta al giocatore corrente.
+     * Se la presa non è completa il turno passa al giocatore successivo,
+     * altrimenti la presa resta sul tavolo in attesa di {@link #valutaPresa()}.
+     *
+     * @param carta la carta da giocare, presa dalla mano del giocatore corrente
+     * @return true se con questa carta la presa è completa
+     * @throws IllegalArgumentException se la carta non è giocabile
+     */
+    public boolean giocaCarta(Carta carta) {
+        if (!isCartaGiocabile(carta)) {
+            throw new IllegalArgumentException("Carta non giocabile: " + carta);
+        }
+
+        getGiocatoreCorrente().rimuoviCarta(carta);
+
+        // Se è la prima carta della mano, imposta il seme richiesto
+        if (deckManager.getNumeroCarteGiocate() == 0) {
+            gameState.setSemeRichiesto(carta.getSeme());
+        }
+
+        deckManager.aggiungiCartaGiocata(carta, gameState.getGiocatoreCorrente());
+        gameState.incrementaCarteGiocateInMano();
+
+        if (isPresaCompleta()) {
+            return true;
+        }
+        gameState.avanzaGiocatore();
+        return false;
+    }
+
+    /**
+     * Valuta la presa completa sul tavolo: assegna le carte al vincitore,
+     * l'eventuale bonus dell'ultima presa e aggiorna i punteggi.
+     * Le carte restano visibili sul tavolo fino a {@link #chiudiPresa()}.
+     *
+     * @return l'indice del giocatore che ha vinto la presa
+     */
+    public int valutaPresa() {
+        if (!isPresaCompleta()) {
+            throw new IllegalStateException("La presa non è ancora completa");
+        }
+
+        gameState.incrementaGiocata();
+
+        List<Carta> carteGiocate = deckManager.getCarteGiocate();
+        int vincitore = scoreCalculator.determinaVincitoreMano(
+            carteGiocate,
+            gameState.getPrimoGiocatoreMano(),
+            gameState.getSemeRichiesto()
+        );
+        long presa = deckManager.getCarteGiocateBits();
+        terziUltimaPresa = scoreCalculator.calcolaPuntiMano(presa);
+
+        giocatori[vincitore].aggiungiPresa(presa);
+        scoreCalculator.accumulaPresa(vincitore, terziUltimaPresa, gameState);
+        assert scoreCalculator.verificaPunteggi(giocatori, gameState) : "Punteggi incrementali non coerenti";
+
+        // Bonus per l'ultima presa e troncamento dei punti della mano
+        if (scoreCalculator.isUltimaGiocata(gameState.getGiocata())) {
+            scoreCalculator.chiudiMano(vincitore, gameState);
+        }
+
+        // Il vincitore apre la presa successiva
+        gameState.setPrimoGiocatoreMano(vincitore);
+        gameState.resetCarteGiocateInMano();
+        gameState.setSemeRichiesto(null);
+
+        return vincitore;
+    }
+
+    /**
+     * Toglie le carte dal tavolo dopo la valutazione e passa il turno
+     * al vincitore della presa
+     */
+    public void chiudiPresa() {
+        deckManager.pulisciCarteGiocate();
+        gameState.setGiocatoreCorrente(gameState.getPrimoGiocatoreMano());
+    }
+
+    /**
+     * Gioca una partita completa in modo sincrono, facendo scegliere ogni carta
+     * alla strategia indicata
+     *
+     * @param strategia strategia usata per tutti i giocatori
+     */
+    public void giocaPartita(AIStrategy strategia) {
+        nuovaPartita();
+        do {
+            iniziaNuovaMano();
+            while (!isManoTerminata()) {
+                Giocatore giocatore = getGiocatoreCorrente();
+                int indice = strategia.selezionaCarta(giocatore, gameState.getSemeRichiesto(),
+                                                      deckManager.getCarteGiocate());
+                if (giocaCarta(giocatore.getMano().get(indice))) {
+                    valutaPresa();
+                    chiudiPresa();
+                }
+            }
+        } while (!isVittoriaRaggiunta());
+        gameState.setGiocoInCorso(false);
+    }
+
+    /** @return true se tutti i giocatori hanno giocato una carta nella presa corrente */
+    public boolean isPresaCompleta() {
+        return deckManager.getNumeroCarteGiocate() == gameState.getNumeroGiocatori();
+    }
+
+    /** @return true se i giocatori hanno terminato le carte della mano corrente */
+    public boolean isManoTerminata() {
+        return giocatori[0].getMano().isEmpty() && deckManager.getNumeroCarteGiocate() == 0;
+    }
+
+    /** @return true se una coppia ha raggiunto il punteggio di vittoria */
+    public boolean isVittoriaRaggiunta() {
+        return gameState.isVittoriaRaggiunta();
+    }
+
+    /** @return il giocatore a cui tocca giocare */
+    public Giocatore getGiocatoreCorrente() {
+        return giocatori[gameState.getGiocatoreCorrente()];
+    }
+
+    /** @return punti dell'ultima presa valutata, in terzi di punto */
+    public int getTerziUltimaPresa() {
+        return terziUltimaPresa;
+    }
+
+    /** @return array dei giocatori della partita */
+    public Giocatore[] getGiocatori() {
+        return giocatori;
+    }
+
+    /** @return seme richiesto nella presa corrente, null in apertura */
+    public Seme getSemeRichiesto() {
+        return gameState.getSemeRichiesto();
+    }
+
+    /** @return gestore dello stato della partita */
+    public GameStateManager getGameState() {
+        return gameState;
+    }
+
+    /** @return gestore del mazzo e delle carte sul tavolo */
+    public DeckManager getDeckManager() {
+        return deckManager;
+    }
+}
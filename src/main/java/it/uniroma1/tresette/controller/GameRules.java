@@ -1,5 +1,6 @@
 package it.uniroma1.tresette.controller;
 
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Seme;
 import java.util.List;
@@ -8,41 +9,174 @@ import java.util.List;
  * Regole core del gioco: validazioni e confronto carte.
  * Questa classe può essere usata da ScoreCalculator e dal Controller per
  * validare mosse e determinare risultati.
+ * <p>
+ * La risoluzione delle prese usa tabelle precalcolate indicizzate per ordinale
+ * delle carte ({@link Carta#getOrdinale()}): per una presa da 2 carte basta una
+ * lettura, per una presa da 4 carte due letture. La carta che comanda la presa
+ * è sempre del seme della prima carta, quindi il seme richiesto è implicito.
  */
 public class GameRules {
 
+    private static final int N = Carta.NUMERO_CARTE;
+
+    /** [primo * 40 + secondo]: 1 se la seconda carta batte la prima, 0 altrimenti */
+    private static final byte[] VINCENTE_2 = new byte[N * N];
+    /** [primo * 40 + secondo]: ordinale della carta vincente * 2 + posizione vincente (0-1) */
+    private static final short[] CODICE_2 = new short[N * N];
+    /** [codice * 1600 + terzo * 40 + quarto]: posizione vincente (0-3) della presa da 4 carte */
+    private static final byte[] VINCENTE_4 = new byte[2 * N * N * N];
+    /** [primo * 40 + secondo]: punti in terzi delle due carte */
+    private static final byte[] PUNTI_2 = new byte[N * N];
+
+    static {
+        for (int a = 0; a < N; a++) {
+            for (int b = 0; b < N; b++) {
+                int i = a * N + b;
+                boolean secondaVince = batte(b, a);
+                VINCENTE_2[i] = (byte) (secondaVince ? 1 : 0);
+                CODICE_2[i] = (short) (secondaVince ? b * 2 + 1 : a * 2);
+                PUNTI_2[i] = (byte) (Carta.puntiInTerzi(a) + Carta.puntiInTerzi(b));
+            }
+        }
+        for (int codice = 0; codice < 2 * N; codice++) {
+            int vincente = codice >> 1;
+            int posizione = codice & 1;
+            for (int c = 0; c < N; c++) {
+                int vincenteC = vincente;
+                int posizioneC = posizione;
+                if (batte(c, vincenteC)) {
+                    vincenteC = c;
+                    posizioneC = 2;
+                }
+                for (int d = 0; d < N; d++) {
+                    VINCENTE_4[(codice * N + c) * N + d] = (byte) (batte(d, vincenteC) ? 3 : posizioneC);
+                }
+            }
+        }
+    }
+
+    /**
+     * Confronto di base usato solo per costruire le tabelle: una carta batte
+     * quella che comanda la presa se è dello stesso seme e più forte.
+     */
+    private static boolean batte(int carta, int vincente) {
+        return Carta.indiceSeme(carta) == Carta.indiceSeme(vincente)
+            && Carta.forza(carta) > Carta.forza(vincente);
+    }
+
+    /**
+     * Posizione vincente di una presa da 2 carte
+     *
+     * @param primo ordinale della carta di apertura
+     * @param secondo ordinale della seconda carta
+     * @return 0 se vince la prima carta, 1 se vince la seconda
+     */
+    public static int vincitorePresa(int primo, int secondo) {
+        return VINCENTE_2[primo * N + secondo];
+    }
+
+    /**
+     * Posizione vincente di una presa da 4 carte
+     *
+     * @param primo ordinale della carta di apertura
+     * @param secondo ordinale della seconda carta
+     * @param terzo ordinale della terza carta
+     * @param quarto ordinale della quarta carta
+     * @return posizione (0-3) della carta vincente nell'ordine di gioco
+     */
+    public static int vincitorePresa(int primo, int secondo, int terzo, int quarto) {
+        return VINCENTE_4[(CODICE_2[primo * N + secondo] * N + terzo) * N + quarto];
+    }
+
+    /**
+     * @return punti in terzi di una presa da 2 carte
+     */
+    public static int puntiPresa(int primo, int secondo) {
+        return PUNTI_2[primo * N + secondo];
+    }
+
+    /**
+     * @return punti in terzi di una presa da 4 carte
+     */
+    public static int puntiPresa(int primo, int secondo, int terzo, int quarto) {
+        return PUNTI_2[primo * N + secondo] + PUNTI_2[terzo * N + quarto];
+    }
+
+    /**
+     * Posizione della carta vincente tra le carte giocate, nell'ordine di gioco.
+     * Le prese complete da 2 e 4 carte sono risolte con le tabelle; le prese
+     * parziali confrontano ogni carta con quella che comanda.
+     *
+     * @param carteGiocate carte giocate, la prima è quella di apertura
+     * @return posizione della carta vincente, -1 se non ci sono carte
+     */
+    public static int posizioneVincente(List<Carta> carteGiocate) {
+        switch (carteGiocate.size()) {
+            case 0:
+                return -1;
+            case 2:
+                return vincitorePresa(carteGiocate.get(0).getOrdinale(), carteGiocate.get(1).getOrdinale());
+            case 4:
+                return vincitorePresa(carteGiocate.get(0).getOrdinale(), carteGiocate.get(1).getOrdinale(),
+                                      carteGiocate.get(2).getOrdinale(), carteGiocate.get(3).getOrdinale());
+            default:
+                int idx = 0;
+                int vincente = carteGiocate.get(0).getOrdinale();
+                for (int i = 1; i < carteGiocate.size(); i++) {
+                    int carta = carteGiocate.get(i).getOrdinale();
+                    if (VINCENTE_2[vincente * N + carta] != 0) {
+                        idx = i;
+                        vincente = carta;
+                    }
+                }
+                return idx;
+        }
+    }
+
+    /**
+     * Generatore delle mosse legali: le carte del seme richiesto se il giocatore
+     * ne ha, altrimenti tutta la mano. Costo costante, un AND e un confronto.
+     *
+     * @param mano mano del giocatore come {@link CardSet}
+     * @param indiceSeme indice del seme richiesto, -1 in apertura
+     * @return carte giocabili come {@link CardSet}
+     */
+    public static long mosseLegali(long mano, int indiceSeme) {
+        if (indiceSeme < 0) return mano; // apertura: qualsiasi carta
+        long delSeme = mano & CardSet.maschera(indiceSeme);
+        return delSeme != 0 ? delSeme : mano; // non può seguire: qualsiasi carta
+    }
+
+    /**
+     * @param mano mano del giocatore come {@link CardSet}
+     * @param semeRichiesto seme richiesto, null in apertura
+     * @return carte giocabili come {@link CardSet}
+     */
+    public static long mosseLegali(long mano, Seme semeRichiesto) {
+        return mosseLegali(mano, semeRichiesto == null ? -1 : semeRichiesto.ordinal());
+    }
+
     /** Verifica se una carta è giocabile rispetto al seme richiesto e alla mano del giocatore. */
     public boolean isCartaGiocabile(List<Carta> mano, Carta cartaDaGiocare, Seme semeRichiesto) {
-        if (semeRichiesto == null) return true; // apertura: qualsiasi carta
-        boolean haSemeRichiesto = mano.stream().anyMatch(c -> c.getSeme() == semeRichiesto);
-        if (!haSemeRichiesto) return true; // non può seguire, qualsiasi carta va bene
-        return cartaDaGiocare.getSeme() == semeRichiesto; // deve seguire il seme
+        return CardSet.contiene(mosseLegali(CardSet.daCarte(mano), semeRichiesto), cartaDaGiocare);
     }
 
     /** Ritorna true se c1 batte c2 considerando il seme richiesto. */
     public boolean vinceTra(Carta c1, Carta c2, Seme semeRichiesto) {
         if (c1.getSeme() == c2.getSeme()) {
-            return c1.getValore() > c2.getValore();
+            return c1.getForzaPerPresa() > c2.getForzaPerPresa();
         }
-        // Carte del seme richiesto battono sempre le altre
-        if (c1.getSeme() == semeRichiesto && c2.getSeme() != semeRichiesto) return true;
-        if (c2.getSeme() == semeRichiesto && c1.getSeme() != semeRichiesto) return false;
-        // Nessuna del seme richiesto: la prima giocata resta vincente
-        return false;
-    }
-
-    /** Determina indice della carta vincente nella lista giocate. */
-    public int indiceVincente(List<Carta> carteGiocate, Seme semeRichiesto) {
-        if (carteGiocate == null || carteGiocate.isEmpty()) return -1;
-        int idx = 0;
-        Carta vincente = carteGiocate.get(0);
-        for (int i = 1; i < carteGiocate.size(); i++) {
-            Carta curr = carteGiocate.get(i);
-            if (vinceTra(curr, vincente, semeRichiesto)) {
-                idx = i;
-                vincente = curr;
-            }
-        }
-        return idx;
+        // Carte del seme richiesto battono sempre le altre; se nessuna è del
+        // seme richiesto la carta già in tavola resta vincente
+        return c1.getSeme() == semeRichiesto;
+    }
+
+    /**
+     * Determina indice della carta vincente nella lista giocate.
+     * Il seme richiesto è sempre quello della prima carta giocata.
+     */
+    public int indiceVincente(List<Carta> carteGiocate) {
+        if (carteGiocate == null) return -1;
+        return posizioneVincente(carteGiocate);
     }
 }
@@ -0,0 +1,187 @@
+package it.uniroma1.tresette.controller;
+
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Seme;
+
+/**
+ * Fotografia immutabile dello stato di gioco dopo una mossa.
+ * Le mani sono copiate come {@link CardSet} e le carte sul tavolo per posizione,
+ * quindi costruirla costa poche copie di array. Il {@link GameController} la
+ * pubblica tramite un riferimento volatile dopo ogni cambiamento: view e thread
+ * dell'AI la leggono senza lock e vedono sempre uno stato coerente, anche mentre
+ * i timer del controller modificano lo stato vivo.
+ */
+public final class GameSnapshot {
+
+    private final long versione;
+    private final long[] mani;
+    private final Carta[] cartePerPosizione;
+    private final int numeroCarteGiocate;
+    private final int giocatoreCorrente;
+    private final int primoGiocatoreMano;
+    private final Seme semeRichiesto;
+    private final int punteggioCoppia1;
+    private final int punteggioCoppia2;
+    private final int terziManoCoppia1;
+    private final int terziManoCoppia2;
+    private final int mano;
+    private final String idMazzata;
+    private final boolean giocoInCorso;
+    private final boolean giocoInPausa;
+    private final boolean valutazioneInCorso;
+
+    private GameSnapshot(GameEngine engine, long versione) {
+        GameStateManager gameState = engine.getGameState();
+        DeckManager deckManager = engine.getDeckManager();
+        int numeroGiocatori = engine.getGiocatori().length;
+
+        this.versione = versione;
+        this.mani = new long[numeroGiocatori];
+        this.cartePerPosizione = new Carta[numeroGiocatori];
+        for (int i = 0; i < numeroGiocatori; i++) {
+            mani[i] = engine.getGiocatori()[i].getManoBits();
+            cartePerPosizione[i] = deckManager.getCartaPerPosizione(i);
+        }
+        this.numeroCarteGiocate = deckManager.getNumeroCarteGiocate();
+        this.giocatoreCorrente = gameState.getGiocatoreCorrente();
+        this.primoGiocatoreMano = gameState.getPrimoGiocatoreMano();
+        this.semeRichiesto = gameState.getSemeRichiesto();
+        this.punteggioCoppia1 = gameState.getPunteggioCoppia1Totale();
+        this.punteggioCoppia2 = gameState.getPunteggioCoppia2Totale();
+        this.terziManoCoppia1 = gameState.getTerziManoCoppia1();
+        this.terziManoCoppia2 = gameState.getTerziManoCoppia2();
+        this.mano = gameState.getMano();
+        this.idMazzata = deckManager.getIdMazzata();
+        this.giocoInCorso = gameState.isGiocoInCorso();
+        this.giocoInPausa = gameState.isGiocoInPausa();
+        this.valutazioneInCorso = gameState.isValutazioneInCorso();
+    }
+
+    /**
+     * Fotografa lo stato corrente del motore
+     *
+     * @param engine il motore di gioco
+     * @param versione numero progressivo della fotografia
+     * @return la fotografia
+     */
+    public static GameSnapshot da(GameEngine engine, long versione) {
+        return new GameSnapshot(engine, versione);
+    }
+
+    /** @return numero progressivo della fotografia, crescente a ogni pubblicazione */
+    public long getVersione() {
+        return versione;
+    }
+
+    /** @return numero di giocatori */
+    public int getNumeroGiocatori() {
+        return mani.length;
+    }
+
+    /**
+     * @param giocatore indice del giocatore
+     * @return mano del giocatore come {@link CardSet}
+     */
+    public long getMano(int giocatore) {
+        return mani[giocatore];
+    }
+
+    /**
+     * @param giocatore indice del giocatore
+     * @return numero di carte in mano al giocatore
+     */
+    public int getNumeroCarte(int giocatore) {
+        return CardSet.conta(mani[giocatore]);
+    }
+
+    /**
+     * @param giocatore indice del giocatore
+     * @param posizione posizione nella mano, nello stesso ordine di {@link it.uniroma1.tresette.model.Giocatore#getMano()}
+     * @return la carta in quella posizione
+     */
+    public Carta getCarta(int giocatore, int posizione) {
+        return CardSet.get(mani[giocatore], posizione);
+    }
+
+    /**
+     * @param giocatore indice del giocatore
+     * @return carte giocabili dal giocatore rispetto al seme richiesto, come {@link CardSet}
+     */
+    public long getMosseLegali(int giocatore) {
+        return GameRules.mosseLegali(mani[giocatore], semeRichiesto);
+    }
+
+    /**
+     * @param posizione posizione fisica del giocatore
+     * @return la carta giocata da quel giocatore nella presa corrente, null se non ha giocato
+     */
+    public Carta getCartaPerPosizione(int posizione) {
+        return posizione >= 0 && posizione < cartePerPosizione.length ? cartePerPosizione[posizione] : null;
+    }
+
+    /** @return numero di carte sul tavolo */
+    public int getNumeroCarteGiocate() {
+        return numeroCarteGiocate;
+    }
+
+    /** @return indice del giocatore di turno */
+    public int getGiocatoreCorrente() {
+        return giocatoreCorrente;
+    }
+
+    /** @return indice del giocatore che ha aperto la presa */
+    public int getPrimoGiocatoreMano() {
+        return primoGiocatoreMano;
+    }
+
+    /** @return seme richiesto nella presa corrente, null in apertura */
+    public Seme getSemeRichiesto() {
+        return semeRichiesto;
+    }
+
+    /** @return punteggio della coppia 1 (o del giocatore 1) */
+    public int getPunteggioCoppia1() {
+        return punteggioCoppia1;
+    }
+
+    /** @return punteggio della coppia 2 (o del giocatore 2) */
+    public int getPunteggioCoppia2() {
+        return punteggioCoppia2;
+    }
+
+    /** @return punti presi nella mano corrente dalla coppia 1, in terzi */
+    public int getTerziManoCoppia1() {
+        return terziManoCoppia1;
+    }
+
+    /** @return punti presi nella mano corrente dalla coppia 2, in terzi */
+    public int getTerziManoCoppia2() {
+        return terziManoCoppia2;
+    }
+
+    /** @return numero della mano corrente */
+    public int getNumeroMano() {
+        return mano;
+    }
+
+    /** @return ID della mazzata corrente */
+    public String getIdMazzata() {
+        return idMazzata;
+    }
+
+    /** @return true se la partita è in corso */
+    public boolean isGiocoInCorso() {
+        return giocoInCorso;
+    }
+
+    /** @return true se la partita è in pausa */
+    public boolean isGiocoInPausa() {
+        return giocoInPausa;
+    }
+
+    /** @return true se la presa sul tavolo è in fase di valutazione */
+    public boolean isValutazioneInCorso() {
+        return valutazioneInCorso;
+    }
+}
@@ -18,16 +18,17 @@ public class GameStateManager {
     private int mano;
     private int giocata;
     
-    private double punteggioCoppia1Totale;
-    private double punteggioCoppia2Totale;
-    private double puntiBonus1;
-    private double puntiBonus2;
+    // Punti interi delle mani concluse e terzi di punto accumulati nella mano corrente
+    private int punteggioCoppia1;
+    private int punteggioCoppia2;
+    private int terziManoCoppia1;
+    private int terziManoCoppia2;
     
     private Seme semeRichiesto;
     
     private final boolean modalitaDueGiocatori;
     private final int numeroGiocatori;
-    private final double punteggioVittoria;
+    private final int punteggioVittoria;
     
     /**
      * Costruttore del gestore dello stato del gioco
@@ -35,7 +36,7 @@ public class GameStateManager {
      * @param modalitaDueGiocatori true per modalità 2 giocatori, false per 4 giocatori
      * @param punteggioVittoria punteggio necessario per vincere la partita
      */
-    public GameStateManager(boolean modalitaDueGiocatori, double punteggioVittoria) {
+    public GameStateManager(boolean modalitaDueGiocatori, int punteggioVittoria) {
         this.modalitaDueGiocatori = modalitaDueGiocatori;
         this.numeroGiocatori = modalitaDueGiocatori ? 2 : 4;
         this.punteggioVittoria = punteggioVittoria;
@@ -55,10 +56,10 @@ public class GameStateManager {
         carteGiocateInMano = 0;
         mano = 0;
         giocata = 0;
-        punteggioCoppia1Totale = 0;
-        punteggioCoppia2Totale = 0;
-        puntiBonus1 = 0;
-        puntiBonus2 = 0;
+        punteggioCoppia1 = 0;
+        punteggioCoppia2 = 0;
+        terziManoCoppia1 = 0;
+        terziManoCoppia2 = 0;
         semeRichiesto = null;
     }
     
@@ -76,6 +77,38 @@ public class GameStateManager {
         giocata++;
     }
     
+    /**
+     * Accumula terzi di punto nella mano corrente della coppia indicata
+     * 
+     * @param coppia1 true se i punti vanno alla coppia 1 (o al giocatore 1)
+     * @param terzi punti da aggiungere, in terzi di punto
+     */
+    public void aggiungiTerzi(boolean coppia1, int terzi) {
+        if (coppia1) {
+            terziManoCoppia1 += terzi;
+        } else {
+            terziManoCoppia2 += terzi;
+        }
+    }
+    
+    /**
+     * Chiude la mano corrente: i terzi accumulati sono troncati a punti interi
+     * e aggiunti al punteggio della partita
+     */
+    public void chiudiMano() {
+        punteggioCoppia1 += terziManoCoppia1 / 3;
+        punteggioCoppia2 += terziManoCoppia2 / 3;
+        terziManoCoppia1 = 0;
+        terziManoCoppia2 = 0;
+    }
+    
+    /**
+     * Azzera il contatore delle giocate all'inizio di una nuova mano
+     */
+    public void resetGiocata() {
+        giocata = 0;
+    }
+    
     /**
      * Incrementa il numero di carte giocate nella mano corrente
      */
@@ -96,13 +129,8 @@ public class GameStateManager {
      * @return true se una coppia ha raggiunto il punteggio di vittoria
      */
     public boolean isVittoriaRaggiunta() {
-        if (modalitaDueGiocatori) {
-            return punteggioCoppia1Totale >= punteggioVittoria || 
-                   punteggioCoppia2Totale >= punteggioVittoria;
-        } else {
-            return punteggioCoppia1Totale >= punteggioVittoria || 
-                   punteggioCoppia2Totale >= punteggioVittoria;
-        }
+        return getPunteggioCoppia1Totale() >= punteggioVittoria || 
+               getPunteggioCoppia2Totale() >= punteggioVittoria;
     }
     
     /**
@@ -112,10 +140,10 @@ public class GameStateManager {
      */
     public String getVincitorePartita() {
         if (modalitaDueGiocatori) {
-            return punteggioCoppia1Totale > punteggioCoppia2Totale ? 
+            return getPunteggioCoppia1Totale() > getPunteggioCoppia2Totale() ? 
                    "Giocatore 1" : "Giocatore 2";
         } else {
-            return punteggioCoppia1Totale > punteggioCoppia2Totale ? 
+            return getPunteggioCoppia1Totale() > getPunteggioCoppia2Totale() ? 
                    "Coppia 1" : "Coppia 2";
         }
     }
@@ -162,26 +190,20 @@ public class GameStateManager {
     /** @return numero della giocata corrente */
     public int getGiocata() { return giocata; }
     
-    public double getPunteggioCoppia1Totale() { return punteggioCoppia1Totale; }
-    public void setPunteggioCoppia1Totale(double punteggioCoppia1Totale) { 
-        this.punteggioCoppia1Totale = punteggioCoppia1Totale; 
-    }
-    
-    public double getPunteggioCoppia2Totale() { return punteggioCoppia2Totale; }
-    public void setPunteggioCoppia2Totale(double punteggioCoppia2Totale) { 
-        this.punteggioCoppia2Totale = punteggioCoppia2Totale; 
-    }
-    
-    public double getPuntiBonus1() { return puntiBonus1; }
-    public void setPuntiBonus1(double puntiBonus1) { this.puntiBonus1 = puntiBonus1; }
+    /** @return punteggio della coppia 1: mani concluse più i punti interi della mano corrente */
+    public int getPunteggioCoppia1Totale() { return punteggioCoppia1 + terziManoCoppia1 / 3; }
+    /** @return punteggio della coppia 2: mani concluse più i punti interi della mano corrente */
+    public int getPunteggioCoppia2Totale() { return punteggioCoppia2 + terziManoCoppia2 / 3; }
     
-    public double getPuntiBonus2() { return puntiBonus2; }
-    public void setPuntiBonus2(double puntiBonus2) { this.puntiBonus2 = puntiBonus2; }
+    /** @return terzi di punto accumulati dalla coppia 1 nella mano corrente */
+    public int getTerziManoCoppia1() { return terziManoCoppia1; }
+    /** @return terzi di punto accumulati dalla coppia 2 nella mano corrente */
+    public int getTerziManoCoppia2() { return terziManoCoppia2; }
     
     public Seme getSemeRichiesto() { return semeRichiesto; }
     public void setSemeRichiesto(Seme semeRichiesto) { this.semeRichiesto = semeRichiesto; }
     
     public boolean isModalitaDueGiocatori() { return modalitaDueGiocatori; }
     public int getNumeroGiocatori() { return numeroGiocatori; }
-    public double getPunteggioVittoria() { return punteggioVittoria; }
+    public int getPunteggioVittoria() { return punteggioVittoria; }
 }
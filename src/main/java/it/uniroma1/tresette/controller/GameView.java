@@ -6,7 +6,7 @@ package it.uniroma1.tresette.controller;
  */
 public interface GameView {
     void aggiornaInterfaccia();
-    void aggiornaPunteggi(double punteggioCoppia1, double punteggioCoppia2);
+    void aggiornaPunteggi(int punteggioCoppia1, int punteggioCoppia2);
     void aggiornaTurno(String nomeGiocatore, int indiceGiocatore);
     void mostraVittoria(String messaggioVittoria);
     void log(String messaggio);
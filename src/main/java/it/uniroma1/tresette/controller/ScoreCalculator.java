@@ -1,5 +1,6 @@
 package it.uniroma1.tresette.controller;
 
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Giocatore;
 import it.uniroma1.tresette.model.Seme;
@@ -9,8 +10,13 @@ import java.util.List;
 /**
  * Gestisce il calcolo e l'aggiornamento dei punteggi nel gioco.
  * Si occupa di calcolare i punti delle mani e aggiornare i punteggi totali.
+ * I punti sono interi espressi in terzi di punto (asso = 3, figure/2/3 = 1,
+ * ultima presa = 3) e vengono troncati a punti interi una sola volta a fine mano.
  */
 public class ScoreCalculator {
+    /** Terzi di punto assegnati a chi vince l'ultima presa della mano */
+    public static final int TERZI_ULTIMA_PRESA = 3;
+    
     private final boolean modalitaDueGiocatori;
     
     public ScoreCalculator(boolean modalitaDueGiocatori) {
@@ -20,22 +26,26 @@ public class ScoreCalculator {
     /**
      * Calcola i punti di una mano di carte giocate
      * @param carteGiocate le carte giocate nella mano
-     * @return i punti totali della mano
+     * @return i punti totali della mano in terzi di punto
      */
-    public double calcolaPuntiMano(List<Carta> carteGiocate) {
-        double puntiMano = 0;
-        for (Carta carta : carteGiocate) {
-            puntiMano += carta.getPunti();
-        }
-        // Converte i punti in punti di gioco (divide per 100)
-        return puntiMano / 100.0;
+    public int calcolaPuntiMano(List<Carta> carteGiocate) {
+        return calcolaPuntiMano(CardSet.daCarte(carteGiocate));
+    }
+    
+    /**
+     * Calcola i punti di un insieme di carte
+     * @param carte le carte come {@link CardSet}
+     * @return i punti delle carte in terzi di punto
+     */
+    public int calcolaPuntiMano(long carte) {
+        return CardSet.puntiInTerzi(carte);
     }
     
     /**
      * Determina il vincitore di una mano
      * @param carteGiocate le carte giocate nella mano
      * @param primoGiocatoreMano l'indice del primo giocatore della mano
-     * @param semeRichiesto il seme richiesto per questa mano
+     * @param semeRichiesto il seme richiesto per questa mano (coincide con il seme della prima carta)
      * @return l'indice del giocatore vincitore
      */
     public int determinaVincitoreMano(List<Carta> carteGiocate, int primoGiocatoreMano, 
@@ -44,106 +54,54 @@ public class ScoreCalculator {
             return primoGiocatoreMano;
         }
         
-        Carta cartaVincente = carteGiocate.get(0);
-        int indiceVincitore = primoGiocatoreMano;
-        
-        // Trova la carta più forte del seme richiesto
-        for (int i = 0; i < carteGiocate.size(); i++) {
-            Carta carta = carteGiocate.get(i);
-            int indiceGiocatoreCorrente = (primoGiocatoreMano + i) % carteGiocate.size();
-            
-            // Una carta vince se:
-            // 1. È del seme richiesto e quella vincente non lo è
-            // 2. Entrambe sono del seme richiesto e ha valore più alto
-            // 3. Entrambe non sono del seme richiesto e ha valore più alto
-            if (dovrebbeVincere(carta, cartaVincente, semeRichiesto)) {
-                cartaVincente = carta;
-                indiceVincitore = indiceGiocatoreCorrente;
-            }
-        }
-        
-        return indiceVincitore;
-    }
-    
-    /**
-     * Determina se una carta dovrebbe vincere rispetto a un'altra
-     */
-    private boolean dovrebbeVincere(Carta nuovaCarta, Carta cartaCorrente, 
-                                  Seme semeRichiesto) {
-        boolean nuovaDelSeme = nuovaCarta.getSeme() == semeRichiesto;
-        boolean correnteDelSeme = cartaCorrente.getSeme() == semeRichiesto;
-        
-        // Se solo la nuova carta è del seme richiesto, vince
-        if (nuovaDelSeme && !correnteDelSeme) {
-            return true;
-        }
-        
-        // Se solo la carta corrente è del seme richiesto, non vince
-        if (!nuovaDelSeme && correnteDelSeme) {
-            return false;
-        }
-        
-        // Se entrambe sono o non sono del seme richiesto, vince quella con valore più alto
-        return nuovaCarta.getForzaPerPresa() > cartaCorrente.getForzaPerPresa();
+        // Risoluzione tramite le tabelle precalcolate delle regole
+        int posizioneVincente = GameRules.posizioneVincente(carteGiocate);
+        return (primoGiocatoreMano + posizioneVincente) % carteGiocate.size();
     }
     
     /**
-     * Aggiorna i punteggi delle coppie/giocatori
-     * @param giocatori array dei giocatori
+     * Accumula i punti di una presa nella mano corrente della coppia vincitrice.
+     * Costo costante: non ripercorre le carte prese in precedenza.
+     * @param vincitore indice del giocatore che ha vinto la presa
+     * @param terziPresa punti delle carte della presa in terzi di punto
      * @param gameState il gestore dello stato del gioco
      */
-    public void aggiornaPunteggi(Giocatore[] giocatori, GameStateManager gameState) {
-        if (modalitaDueGiocatori) {
-            aggiornaPunteggiDueGiocatori(giocatori, gameState);
-        } else {
-            aggiornaPunteggiQuattroGiocatori(giocatori, gameState);
-        }
+    public void accumulaPresa(int vincitore, int terziPresa, GameStateManager gameState) {
+        // In entrambe le modalità i giocatori pari appartengono alla coppia 1
+        gameState.aggiungiTerzi(vincitore % 2 == 0, terziPresa);
     }
     
     /**
-     * Aggiorna i punteggi per modalità 2 giocatori
+     * Assegna il bonus dell'ultima presa e chiude la mano, troncando i punti a interi
+     * @param vincitore indice del giocatore che ha vinto l'ultima presa
+     * @param gameState il gestore dello stato del gioco
      */
-    private void aggiornaPunteggiDueGiocatori(Giocatore[] giocatori, GameStateManager gameState) {
-        double punteggioGiocatore1 = 0;
-        for (Carta carta : giocatori[0].getCartePrese()) {
-            punteggioGiocatore1 += carta.getPunti();
-        }
-        
-        double punteggioGiocatore2 = 0;
-        for (Carta carta : giocatori[1].getCartePrese()) {
-            punteggioGiocatore2 += carta.getPunti();
-        }
-        
-        // Converte in punti di gioco e aggiunge i punti bonus
-        gameState.setPunteggioCoppia1Totale(punteggioGiocatore1 / 100.0 + gameState.getPuntiBonus1());
-        gameState.setPunteggioCoppia2Totale(punteggioGiocatore2 / 100.0 + gameState.getPuntiBonus2());
+    public void chiudiMano(int vincitore, GameStateManager gameState) {
+        gameState.aggiungiTerzi(vincitore % 2 == 0, TERZI_ULTIMA_PRESA);
+        gameState.chiudiMano();
     }
     
     /**
-     * Aggiorna i punteggi per modalità 4 giocatori (coppie)
+     * Controllo di coerenza per il debug: ricalcola da zero i punti delle carte prese
+     * nella mano corrente e li confronta con i totali accumulati presa per presa.
+     * Va eseguito prima di assegnare il bonus dell'ultima presa.
+     * @param giocatori array dei giocatori
+     * @param gameState il gestore dello stato del gioco
+     * @return true se i punti ricalcolati coincidono con quelli accumulati
      */
-    private void aggiornaPunteggiQuattroGiocatori(Giocatore[] giocatori, GameStateManager gameState) {
-        // Coppia 1: giocatori 0 e 2
-        double punteggioCoppia1 = 0;
-        for (Carta carta : giocatori[0].getCartePrese()) {
-            punteggioCoppia1 += carta.getPunti();
-        }
-        for (Carta carta : giocatori[2].getCartePrese()) {
-            punteggioCoppia1 += carta.getPunti();
-        }
-        
-        // Coppia 2: giocatori 1 e 3
-        double punteggioCoppia2 = 0;
-        for (Carta carta : giocatori[1].getCartePrese()) {
-            punteggioCoppia2 += carta.getPunti();
-        }
-        for (Carta carta : giocatori[3].getCartePrese()) {
-            punteggioCoppia2 += carta.getPunti();
+    public boolean verificaPunteggi(Giocatore[] giocatori, GameStateManager gameState) {
+        int terziCoppia1 = 0;
+        int terziCoppia2 = 0;
+        if (modalitaDueGiocatori) {
+            terziCoppia1 = calcolaPuntiMano(giocatori[0].getCartePreseBits());
+            terziCoppia2 = calcolaPuntiMano(giocatori[1].getCartePreseBits());
+        } else {
+            // Coppia 1: giocatori 0 e 2, coppia 2: giocatori 1 e 3
+            terziCoppia1 = calcolaPuntiMano(giocatori[0].getCartePreseBits() | giocatori[2].getCartePreseBits());
+            terziCoppia2 = calcolaPuntiMano(giocatori[1].getCartePreseBits() | giocatori[3].getCartePreseBits());
         }
-        
-        // Converte in punti di gioco e aggiunge i punti bonus
-        gameState.setPunteggioCoppia1Totale(punteggioCoppia1 / 100.0 + gameState.getPuntiBonus1());
-        gameState.setPunteggioCoppia2Totale(punteggioCoppia2 / 100.0 + gameState.getPuntiBonus2());
+        return terziCoppia1 == gameState.getTerziManoCoppia1()
+            && terziCoppia2 == gameState.getTerziManoCoppia2();
     }
     
     /**
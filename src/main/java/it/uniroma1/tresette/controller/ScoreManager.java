@@ -42,8 +42,8 @@ public class ScoreManager {
         return calculator.determinaVincitoreMano(carteGiocate, primoGiocatoreMano, semeRichiesto);
     }
 
-    /** Calcola i punti totali della mano (somma dei punti carta divisa per 100). */
+    /** Calcola i punti totali della mano (somma dei punti carta in terzi divisa per 3). */
     public double calcolaPuntiMano(List<Carta> carteGiocate) {
-        return calculator.calcolaPuntiMano(carteGiocate);
+        return calculator.calcolaPuntiMano(carteGiocate) / 3.0;
     }
 }
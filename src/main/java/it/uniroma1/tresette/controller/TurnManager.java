@@ -27,25 +27,7 @@ public class TurnManager {
         // Imposta il giocatore corrente come primo della mano
         gameState.setGiocatoreCorrente(gameState.getPrimoGiocatoreMano());
         
-        // Notifica il cambio turno
-        gameObservable.notifyTurnoCambiato(
-            giocatori[gameState.getGiocatoreCorrente()].getNome(), 
-            gameState.getGiocatoreCorrente()
-        );
-        
-        view.aggiornaTurno(
-            giocatori[gameState.getGiocatoreCorrente()].getNome(), 
-            gameState.getGiocatoreCorrente()
-        );
-        
-        // Determina il tipo di turno
-        if (giocatori[gameState.getGiocatoreCorrente()].isUmano()) {
-            gameObservable.notifyGameStateChanged(GameState.TURNO_UMANO);
-            view.abilitaBottoniCarte(true);
-        } else {
-            gameObservable.notifyGameStateChanged(GameState.TURNO_AI);
-            view.abilitaBottoniCarte(false);
-        }
+        annunciaTurno(giocatori, gameState);
     }
     
     /**
@@ -57,6 +39,16 @@ public class TurnManager {
         // Passa al giocatore successivo
         gameState.avanzaGiocatore();
         
+        annunciaTurno(giocatori, gameState);
+    }
+    
+    /**
+     * Notifica il turno del giocatore corrente senza modificarlo.
+     * Usato quando il passaggio di turno è già stato applicato dal {@link GameEngine}.
+     * @param giocatori array dei giocatori
+     * @param gameState gestore dello stato del gioco
+     */
+    public void annunciaTurno(Giocatore[] giocatori, GameStateManager gameState) {
         // Notifica il cambio turno
         gameObservable.notifyTurnoCambiato(
             giocatori[gameState.getGiocatoreCorrente()].getNome(), 
@@ -0,0 +1,206 @@
+package it.uniroma1.tresette.controller.ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Nodi dell'albero di {@link StrategiaISMCTS} in array primitivi paralleli.
+ * <p>
+ * Un nodo è un indice: carta che vi conduce, coppia di chi l'ha giocata,
+ * primo figlio e fratello successivo (liste concatenate di indici, -1 se
+ * assenti), maschera delle carte dei figli, visite, disponibilità e somma
+ * delle ricompense in terzi. Gli array sono allocati una volta sola con la
+ * capacità massima; {@link #svuota()} riporta a zero il contatore dei nodi
+ * senza liberare memoria, così una decisione non crea oggetti per nodo e
+ * non produce lavoro per il garbage collector. Per conservare un sottoalbero
+ * tra due decisioni lo si copia in un'altra arena con
+ * {@link #copiaSottoalbero(ArenaNodi, int, int, int)}: i nodi scartati restano
+ * nell'arena di origine, che alla decisione successiva viene svuotata.
+ * <p>
+ * Più thread possono allocare e aggiornare nodi insieme: contatori e
+ * collegamenti sono modificati con operazioni atomiche sugli elementi degli
+ * array, e un nodo è pubblicato solo dopo aver inizializzato tutti i campi.
+ */
+final class ArenaNodi {
+
+    static final int NESSUNO = -1;
+
+    private static final VarHandle INT = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONG = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final byte[] carta;
+    private final byte[] coppia;
+    private final int[] fratello;
+    private final int[] primoFiglio;
+    private final long[] carteFigli;
+    private final int[] visite;
+    private final int[] disponibilita;
+    private final long[] somma;
+    private final AtomicInteger usati = new AtomicInteger();
+
+    /**
+     * @param capacita numero massimo di nodi
+     */
+    ArenaNodi(int capacita) {
+        if (capacita < 1) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacita);
+        }
+        carta = new byte[capacita];
+        coppia = new byte[capacita];
+        fratello = new int[capacita];
+        primoFiglio = new int[capacita];
+        carteFigli = new long[capacita];
+        visite = new int[capacita];
+        disponibilita = new int[capacita];
+        somma = new long[capacita];
+    }
+
+    /** Dimentica tutti i nodi; gli array restano allocati */
+    void svuota() {
+        usati.set(0);
+    }
+
+    /** @return true se non c'è spazio per altri nodi */
+    boolean isPiena() {
+        return usati.get() >= carta.length;
+    }
+
+    /** @return nodi allocati dall'ultimo svuotamento */
+    int getUsati() {
+        return Math.min(usati.get(), carta.length);
+    }
+
+    /** @return numero massimo di nodi */
+    int getCapacita() {
+        return carta.length;
+    }
+
+    /**
+     * Alloca e inizializza un nodo, non ancora collegato all'albero
+     *
+     * @param cartaNodo ordinale della carta, -1 per la radice
+     * @param coppiaNodo coppia di chi ha giocato la carta
+     * @param visiteIniziali visite e disponibilità iniziali
+     * @return indice del nodo, {@link #NESSUNO} se l'arena è piena
+     */
+    int alloca(int cartaNodo, int coppiaNodo, int visiteIniziali) {
+        if (usati.get() >= carta.length) {
+            return NESSUNO;
+        }
+        int nodo = usati.getAndIncrement();
+        if (nodo >= carta.length) {
+            return NESSUNO;
+        }
+        carta[nodo] = (byte) cartaNodo;
+        coppia[nodo] = (byte) coppiaNodo;
+        fratello[nodo] = NESSUNO;
+        primoFiglio[nodo] = NESSUNO;
+        carteFigli[nodo] = 0L;
+        visite[nodo] = visiteIniziali;
+        disponibilita[nodo] = visiteIniziali;
+        somma[nodo] = 0L;
+        return nodo;
+    }
+
+    /**
+     * Copia un sottoalbero da un'altra arena, statistiche comprese. Va
+     * chiamato tra una ricerca e l'altra, senza thread di ricerca attivi.
+     * Se l'arena si riempie i figli non copiati tornano a essere carte da provare.
+     * Le ricompense sono i terzi presi da una coppia dalla vecchia radice a
+     * fine mano: per ogni visita si tolgono quelli presi prima della nuova.
+     *
+     * @param sorgente arena di origine
+     * @param nodo radice del sottoalbero nella sorgente
+     * @param scartoCoppia0 terzi presi dalla coppia 0 tra la vecchia radice e il nodo
+     * @param scartoCoppia1 terzi presi dalla coppia 1 tra la vecchia radice e il nodo
+     * @return indice della copia della radice, {@link #NESSUNO} se l'arena è piena
+     */
+    int copiaSottoalbero(ArenaNodi sorgente, int nodo, int scartoCoppia0, int scartoCoppia1) {
+        int copia = alloca(sorgente.carta[nodo], sorgente.coppia[nodo], 0);
+        if (copia == NESSUNO) {
+            return NESSUNO;
+        }
+        visite[copia] = sorgente.visite[nodo];
+        disponibilita[copia] = sorgente.disponibilita[nodo];
+        somma[copia] = sorgente.somma[nodo]
+            - (long) visite[copia] * (coppia[copia] == 0 ? scartoCoppia0 : scartoCoppia1);
+        long carteCopiate = 0L;
+        for (int figlio = sorgente.primoFiglio[nodo]; figlio != NESSUNO; figlio = sorgente.fratello[figlio]) {
+            int copiaFiglio = copiaSottoalbero(sorgente, figlio, scartoCoppia0, scartoCoppia1);
+            if (copiaFiglio == NESSUNO) {
+                break;
+            }
+            fratello[copiaFiglio] = primoFiglio[copia];
+            primoFiglio[copia] = copiaFiglio;
+            carteCopiate |= 1L << carta[copiaFiglio];
+        }
+        carteFigli[copia] = carteCopiate;
+        return copia;
+    }
+
+    /**
+     * Collega un nodo appena allocato in testa ai figli del genitore,
+     * rendendolo visibile agli altri thread
+     */
+    void aggiungiFiglio(int genitore, int figlio) {
+        int testa;
+        do {
+            testa = (int) INT.getAcquire(primoFiglio, genitore);
+            fratello[figlio] = testa;
+        } while (!INT.compareAndSet(primoFiglio, genitore, testa, figlio));
+    }
+
+    /**
+     * Riserva una carta tra i figli del nodo
+     *
+     * @return true se la carta non era ancora riservata
+     */
+    boolean riservaCarta(int nodo, long attese, int cartaFiglio) {
+        return LONG.compareAndSet(carteFigli, nodo, attese, attese | 1L << cartaFiglio);
+    }
+
+    int carta(int nodo) {
+        return carta[nodo];
+    }
+
+    int coppia(int nodo) {
+        return coppia[nodo];
+    }
+
+    int primoFiglio(int nodo) {
+        return (int) INT.getAcquire(primoFiglio, nodo);
+    }
+
+    int fratello(int nodo) {
+        return fratello[nodo];
+    }
+
+    long carteFigli(int nodo) {
+        return (long) LONG.getVolatile(carteFigli, nodo);
+    }
+
+    int visite(int nodo) {
+        return (int) INT.getOpaque(visite, nodo);
+    }
+
+    int disponibilita(int nodo) {
+        return (int) INT.getOpaque(disponibilita, nodo);
+    }
+
+    long somma(int nodo) {
+        return (long) LONG.getOpaque(somma, nodo);
+    }
+
+    void aggiungiVisita(int nodo) {
+        INT.getAndAdd(visite, nodo, 1);
+    }
+
+    void aggiungiDisponibilita(int nodo) {
+        INT.getAndAdd(disponibilita, nodo, 1);
+    }
+
+    void aggiungiRicompensa(int nodo, long terzi) {
+        LONG.getAndAdd(somma, nodo, terzi);
+    }
+}
@@ -1,90 +1,122 @@
 package it.uniroma1.tresette.controller.ai;
 
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.model.Giocatore;
 import it.uniroma1.tresette.model.Seme;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Basic AI strategy emulating current heuristics: follow suit when possible,
- * try to win if feasible, otherwise discard minimal value cards.
+ * try to win with the weakest card that beats the trick, otherwise give up
+ * the card worth least (fewest points in thirds, then lowest trick strength).
+ * The heuristics work on {@link CardSet} masks, so the same rules can be
+ * applied by the batch simulator without building any list.
  */
 public class BasicAIStrategy implements AIStrategy {
 
+    // Valori dal più debole al più forte nella presa: 4, 5, ..., re, asso, 2, 3
+    private static final int[] VALORI_PER_FORZA = ordinaValori(false);
+    // Valori dal meno al più prezioso da scartare: prima i punti in terzi, poi la forza
+    private static final int[] VALORI_PER_SCARTO = ordinaValori(true);
+
     @Override
     public int selezionaCarta(Giocatore giocatore, Seme semeRichiesto, List<Carta> carteGiocate) {
-        List<Carta> mano = giocatore.getMano();
-        if (mano == null || mano.isEmpty()) return -1;
+        long mano = giocatore.getManoBits();
+        if (mano == CardSet.VUOTO) return -1;
+
+        int indiceSeme = semeRichiesto == null ? -1 : semeRichiesto.ordinal();
+        int carta = scegliCarta(mano, indiceSeme, CardSet.daCarte(carteGiocate));
+        // La mano del giocatore è ordinata per ordinale, come il CardSet
+        return CardSet.posizione(mano, Carta.perOrdinale(carta));
+    }
 
-        if (semeRichiesto == null) {
+    /**
+     * Applica le euristiche su maschere di bit.
+     *
+     * @param mano          mano del giocatore come {@link CardSet}, non vuota
+     * @param indiceSeme    indice del seme richiesto, -1 in apertura
+     * @param carteGiocate  carte già giocate nella presa come {@link CardSet}
+     * @return ordinale della carta da giocare
+     */
+    public static int scegliCarta(long mano, int indiceSeme, long carteGiocate) {
+        if (indiceSeme < 0) {
             // Apertura: gioca una carta media per non scoprire troppo
-            return indiceCartaConValoreMediano(mano);
+            return cartaConValoreMediano(mano);
         }
 
         // Cerca carte del seme richiesto
-        int idxSeguendoSeme = indiceCartaMinimaDelSeme(mano, semeRichiesto);
-        if (idxSeguendoSeme >= 0) {
-            // Se può seguire il seme, valuta se può vincere
-            int idxVincente = indiceCartaMinimaCheVince(mano, semeRichiesto, carteGiocate);
-            return idxVincente >= 0 ? idxVincente : idxSeguendoSeme;
+        long delSeme = mano & CardSet.maschera(indiceSeme);
+        if (delSeme != 0) {
+            // Se può seguire il seme, prova a vincere con la più debole che supera la migliore giocata;
+            // se non può vincere lascia la carta meno preziosa del seme
+            int forzaMigliore = 0;
+            for (long l = carteGiocate & CardSet.maschera(indiceSeme); l != 0; l &= l - 1) {
+                forzaMigliore = Math.max(forzaMigliore, Carta.forza(Long.numberOfTrailingZeros(l)));
+            }
+            for (int valore : VALORI_PER_FORZA) {
+                long carta = delSeme & CardSet.mascheraValore(valore);
+                if (carta != 0 && Carta.forza(Long.numberOfTrailingZeros(carta)) > forzaMigliore) {
+                    return Long.numberOfTrailingZeros(carta);
+                }
+            }
+            return cartaMinima(delSeme);
         }
 
-        // Non può seguire: scarta la carta più bassa
-        return indiceCartaMinima(mano);
-    }
-
-    private int indiceCartaConValoreMediano(List<Carta> mano) {
-        if (mano.size() <= 2) return 0;
-        List<Carta> sorted = mano.stream().sorted(Comparator.comparingInt(Carta::getValore)).toList();
-        Carta mediana = sorted.get(sorted.size() / 2);
-        return mano.indexOf(mediana);
+        // Non può seguire: scarta la carta meno preziosa
+        return cartaMinima(mano);
     }
 
-    private int indiceCartaMinimaDelSeme(List<Carta> mano, Seme seme) {
-        int idx = -1;
-        int minVal = Integer.MAX_VALUE;
-        for (int i = 0; i < mano.size(); i++) {
-            Carta c = mano.get(i);
-            if (c.getSeme() == seme && c.getValore() < minVal) {
-                minVal = c.getValore();
-                idx = i;
+    /** Carta di valore mediano; a parità di valore vale l'ordine di seme, come un ordinamento stabile della mano */
+    private static int cartaConValoreMediano(long mano) {
+        int numeroCarte = CardSet.conta(mano);
+        if (numeroCarte <= 2) return Long.numberOfTrailingZeros(mano);
+        int daSaltare = numeroCarte / 2;
+        for (int valore = 1; ; valore++) {
+            long colonna = mano & CardSet.mascheraValore(valore);
+            int quante = Long.bitCount(colonna);
+            if (daSaltare < quante) {
+                for (int i = 0; i < daSaltare; i++) {
+                    colonna &= colonna - 1;
+                }
+                return Long.numberOfTrailingZeros(colonna);
             }
+            daSaltare -= quante;
         }
-        return idx;
     }
 
-    private int indiceCartaMinima(List<Carta> mano) {
-        int idx = 0;
-        int minVal = Integer.MAX_VALUE;
-        for (int i = 0; i < mano.size(); i++) {
-            int v = mano.get(i).getValore();
-            if (v < minVal) {
-                minVal = v;
-                idx = i;
+    /**
+     * Carta che costa meno lasciare: meno punti in terzi e, a parità, meno
+     * forza; a parità di valore quella del seme con indice più basso
+     */
+    private static int cartaMinima(long mano) {
+        for (int valore : VALORI_PER_SCARTO) {
+            long colonna = mano & CardSet.mascheraValore(valore);
+            if (colonna != 0) {
+                return Long.numberOfTrailingZeros(colonna);
             }
         }
-        return idx;
+        throw new IllegalArgumentException("Mano vuota");
     }
 
-    private int indiceCartaMinimaCheVince(List<Carta> mano, Seme semeRichiesto, List<Carta> carteGiocate) {
-        // Semplice euristica: se mano contiene una carta del seme richiesto con valore maggiore
-        // della migliore giocata finora, prova a vincere con la minima che supera.
-        int bestValue = -1;
-        for (Carta c : carteGiocate) {
-            if (c.getSeme() == semeRichiesto && c.getValore() > bestValue) {
-                bestValue = c.getValore();
-            }
+    /** Valori da 1 a 10 ordinati per forza crescente, o prima per punti in terzi se richiesto */
+    private static int[] ordinaValori(boolean primaPunti) {
+        Integer[] valori = new Integer[Carta.CARTE_PER_SEME];
+        for (int v = 0; v < valori.length; v++) {
+            valori[v] = v + 1;
         }
-        int idx = -1;
-        int minOver = Integer.MAX_VALUE;
-        for (int i = 0; i < mano.size(); i++) {
-            Carta c = mano.get(i);
-            if (c.getSeme() == semeRichiesto && c.getValore() > bestValue && c.getValore() < minOver) {
-                minOver = c.getValore();
-                idx = i;
+        // Forza e punti non dipendono dal seme: basta guardare il primo
+        Arrays.sort(valori, (a, b) -> {
+            if (primaPunti && Carta.puntiInTerzi(a - 1) != Carta.puntiInTerzi(b - 1)) {
+                return Integer.compare(Carta.puntiInTerzi(a - 1), Carta.puntiInTerzi(b - 1));
             }
+            return Integer.compare(Carta.forza(a - 1), Carta.forza(b - 1));
+        });
+        int[] ordinati = new int[valori.length];
+        for (int v = 0; v < valori.length; v++) {
+            ordinati[v] = valori[v];
         }
-        return idx;
+        return ordinati;
     }
 }
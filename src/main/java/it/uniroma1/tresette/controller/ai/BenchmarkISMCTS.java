@@ -0,0 +1,82 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.Carta;
+
+import java.util.SplittableRandom;
+
+/**
+ * Misura quanto scala la ricerca parallela di {@link StrategiaISMCTS}: sulla
+ * stessa posizione (la prima carta di una mazzata a 4 giocatori fissata dal
+ * seme) esegue una decisione per ogni numero di thread e stampa le iterazioni
+ * al secondo. Ha senso solo con almeno tanti core quanti thread.
+ */
+public class BenchmarkISMCTS {
+
+    private static final long SEME_MAZZATA = 42;
+    private static final int NUMERO_GIOCATORI = 4;
+
+    /**
+     * Esegue il benchmark
+     *
+     * @param args tempo per decisione in millisecondi (2000 se assente), poi i numeri di thread (1 2 4 8 se assenti)
+     */
+    public static void main(String[] args) {
+        long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int[] thread = {1, 2, 4, 8};
+        if (args.length > 1) {
+            thread = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                thread[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        StatoCompatto posizione = posizioneFissa();
+        System.out.println("=== BENCHMARK ISMCTS (" + Runtime.getRuntime().availableProcessors() + " core, "
+            + budgetMillis + " ms per decisione) ===");
+
+        // Riscaldamento del JIT, non misurato
+        misura(posizione, budgetMillis, thread[0]);
+        double primo = 0;
+        for (int numeroThread : thread) {
+            double iterazioniAlSecondo = misura(posizione, budgetMillis, numeroThread);
+            if (primo == 0) {
+                primo = iterazioniAlSecondo;
+            }
+            System.out.printf("%d thread: %.0f iterazioni/s (%.2fx rispetto a %d)%n",
+                numeroThread, iterazioniAlSecondo, iterazioniAlSecondo / primo, thread[0]);
+        }
+    }
+
+    /** @return iterazioni al secondo di una decisione dalla posizione indicata */
+    private static double misura(StatoCompatto posizione, long budgetMillis, int numeroThread) {
+        StrategiaISMCTS strategia = new StrategiaISMCTS(null, budgetMillis, numeroThread);
+        try {
+            strategia.scegliCarta(posizione);
+            return strategia.getIterazioniAlSecondo();
+        } finally {
+            strategia.chiudi();
+        }
+    }
+
+    /** @return la posizione iniziale della mazzata fissata da {@link #SEME_MAZZATA} */
+    private static StatoCompatto posizioneFissa() {
+        SplittableRandom random = new SplittableRandom(SEME_MAZZATA);
+        int[] mazzo = new int[Carta.NUMERO_CARTE];
+        for (int i = 0; i < mazzo.length; i++) {
+            mazzo[i] = i;
+        }
+        for (int i = mazzo.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int carta = mazzo[i];
+            mazzo[i] = mazzo[j];
+            mazzo[j] = carta;
+        }
+        long[] mani = new long[4];
+        for (int i = 0; i < mazzo.length; i++) {
+            mani[i % NUMERO_GIOCATORI] |= 1L << mazzo[i];
+        }
+        StatoCompatto posizione = new StatoCompatto(NUMERO_GIOCATORI);
+        posizione.inizializza(mani, 0, 0, 0);
+        return posizione;
+    }
+}
@@ -0,0 +1,265 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Seme;
+
+import java.util.SplittableRandom;
+
+/**
+ * Campiona le mani nascoste per le strategie a informazione imperfetta.
+ * <p>
+ * Il giocatore di turno conosce la propria mano e le carte uscite: quelle
+ * ancora in mano agli altri vengono ridistribuite a caso, rispettando quante
+ * carte ha ciascuno e, dopo {@link #prepara}, i semi che ha già dimostrato di
+ * non avere (vedi {@link TracciatoreCarte}). Anche con i vincoli le mazzate
+ * sono uniformi tra tutte quelle compatibili e non servono tentativi a vuoto:
+ * {@link #prepara} conta, dall'ultimo seme al primo, in quanti modi si possono
+ * completare le mani per ogni numero di carte che manca a ciascun giocatore;
+ * {@link #campiona(StatoCompatto)} sceglie seme per seme quante carte dare a
+ * ognuno con probabilità proporzionale a quei conteggi e le estrae a caso
+ * tra quelle del seme.
+ * <p>
+ * Non alloca oggetti dopo la costruzione e non è thread-safe: ogni thread
+ * usa il proprio campionatore.
+ */
+public final class CampionatoreMani {
+
+    /** Nessun vincolo sui semi, per chi non traccia la partita; da non modificare */
+    static final int[] NESSUN_SEME_MANCANTE = new int[4];
+
+    private static final int SEMI = Seme.values().length;
+    private static final int ALTRI = 3;
+    // Carte che mancano a ciascuno degli altri: fino a 10 a testa in tre, o 20 a uno solo
+    private static final int MAX_STATI = 11 * 11 * 11;
+    private static final long[][] BINOMIALI = new long[Carta.NUMERO_CARTE + 1][];
+
+    static {
+        for (int n = 0; n <= Carta.NUMERO_CARTE; n++) {
+            BINOMIALI[n] = new long[n + 1];
+            BINOMIALI[n][0] = BINOMIALI[n][n] = 1;
+            for (int k = 1; k < n; k++) {
+                BINOMIALI[n][k] = BINOMIALI[n - 1][k - 1] + BINOMIALI[n - 1][k];
+            }
+        }
+    }
+
+    private final SplittableRandom random;
+    private final int[] mazzo = new int[Carta.NUMERO_CARTE];
+
+    // Vincoli preparati: posizione, altri giocatori, carte da dare e semi ammessi
+    private StatoCompatto posizione;
+    private final int[] altri = new int[ALTRI];
+    private final int[] carteDaDare = new int[ALTRI];
+    private final boolean[][] ammesso = new boolean[SEMI][ALTRI];
+    private final long[] nascostePerSeme = new long[SEMI];
+    private boolean vincolato;
+    // modi[s][stato]: mazzate compatibili per i semi da s in poi, dato quante carte mancano a ciascuno
+    private final long[][] modi = new long[SEMI + 1][MAX_STATI];
+
+    /**
+     * @param random generatore da usare, non condiviso tra thread
+     */
+    public CampionatoreMani(SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * Prepara i campioni di una decisione rispettando i semi mancanti. Se non
+     * ci sono vincoli sugli altri giocatori, o se non sono soddisfacibili
+     * (semi mancanti incoerenti con la posizione), {@link #campiona(StatoCompatto)}
+     * si limita al numero di carte come {@link #campiona(StatoCompatto, StatoCompatto)}.
+     *
+     * @param posizione posizione reale, non viene modificata; va lasciata intatta fino all'ultimo campione
+     * @param semiMancanti per ogni giocatore la maschera dei semi che non ha, bit i per il seme di indice i
+     */
+    public void prepara(StatoCompatto posizione, int[] semiMancanti) {
+        this.posizione = posizione;
+        int io = posizione.getTurno();
+        int numeroAltri = 0;
+        int vincoli = 0;
+        long nascoste = CardSet.VUOTO;
+        for (int g = 0; g < posizione.getNumeroGiocatori(); g++) {
+            if (g != io) {
+                altri[numeroAltri] = g;
+                carteDaDare[numeroAltri] = CardSet.conta(posizione.getMano(g));
+                nascoste |= posizione.getMano(g);
+                vincoli |= semiMancanti[g];
+                numeroAltri++;
+            }
+        }
+        for (int j = numeroAltri; j < ALTRI; j++) {
+            altri[j] = -1;
+            carteDaDare[j] = 0;
+        }
+        vincolato = false;
+        if (vincoli == 0) {
+            return;
+        }
+        for (int s = 0; s < SEMI; s++) {
+            nascostePerSeme[s] = nascoste & CardSet.maschera(s);
+            for (int j = 0; j < ALTRI; j++) {
+                ammesso[s][j] = altri[j] >= 0 && (semiMancanti[altri[j]] & 1 << s) == 0;
+            }
+        }
+        contaModi();
+        vincolato = modi[0][indice(carteDaDare[0], carteDaDare[1], carteDaDare[2])] > 0;
+    }
+
+    /**
+     * Copia la posizione preparata con {@link #prepara} e ridistribuisce le
+     * carte degli altri giocatori
+     *
+     * @param campione stato in cui scrivere la mazzata campionata
+     */
+    public void campiona(StatoCompatto campione) {
+        if (!vincolato) {
+            campiona(posizione, campione);
+            return;
+        }
+        campione.copiaDa(posizione);
+        int r0 = carteDaDare[0];
+        int r1 = carteDaDare[1];
+        int r2 = carteDaDare[2];
+        long mano0 = CardSet.VUOTO;
+        long mano1 = CardSet.VUOTO;
+        long mano2 = CardSet.VUOTO;
+        for (int s = 0; s < SEMI; s++) {
+            // Quante carte del seme a ciascuno, con probabilità proporzionale alle mazzate compatibili
+            int u = Long.bitCount(nascostePerSeme[s]);
+            long scelta = random.nextLong(modi[s][indice(r0, r1, r2)]);
+            int x0 = 0;
+            int x1 = 0;
+            int x2 = 0;
+            cerca:
+            for (x0 = massimo(s, 0, u, r0); x0 >= 0; x0--) {
+                for (x1 = massimo(s, 1, u - x0, r1); x1 >= 0; x1--) {
+                    x2 = u - x0 - x1;
+                    if (!isAmmissibile(s, 2, x2, r2)) {
+                        continue;
+                    }
+                    long peso = BINOMIALI[u][x0] * BINOMIALI[u - x0][x1] * modi[s + 1][indice(r0 - x0, r1 - x1, r2 - x2)];
+                    if (scelta < peso) {
+                        break cerca;
+                    }
+                    scelta -= peso;
+                }
+            }
+            r0 -= x0;
+            r1 -= x1;
+            r2 -= x2;
+            // Fisher-Yates parziale tra le carte del seme
+            int n = 0;
+            for (long l = nascostePerSeme[s]; l != 0; l &= l - 1) {
+                mazzo[n++] = Long.numberOfTrailingZeros(l);
+            }
+            mano0 |= pesca(n, x0);
+            n -= x0;
+            mano1 |= pesca(n, x1);
+            n -= x1;
+            mano2 |= pesca(n, x2);
+        }
+        if (altri[0] >= 0) {
+            campione.sostituisciMano(altri[0], mano0);
+        }
+        if (altri[1] >= 0) {
+            campione.sostituisciMano(altri[1], mano1);
+        }
+        if (altri[2] >= 0) {
+            campione.sostituisciMano(altri[2], mano2);
+        }
+    }
+
+    /**
+     * Copia la posizione e ridistribuisce a caso le carte degli altri giocatori,
+     * rispettando solo quante ne ha ciascuno
+     *
+     * @param posizione posizione reale, non viene modificata
+     * @param campione stato in cui scrivere la mazzata campionata
+     */
+    public void campiona(StatoCompatto posizione, StatoCompatto campione) {
+        campione.copiaDa(posizione);
+        int numeroGiocatori = posizione.getNumeroGiocatori();
+        int io = posizione.getTurno();
+        int nascoste = 0;
+        for (int g = 0; g < numeroGiocatori; g++) {
+            if (g != io) {
+                for (long l = posizione.getMano(g); l != 0; l &= l - 1) {
+                    mazzo[nascoste++] = Long.numberOfTrailingZeros(l);
+                }
+            }
+        }
+        // Fisher-Yates parziale: ogni giocatore pesca dalle carte rimaste
+        for (int g = 0; g < numeroGiocatori; g++) {
+            if (g == io) {
+                continue;
+            }
+            campione.sostituisciMano(g, pesca(nascoste, CardSet.conta(posizione.getMano(g))));
+            nascoste -= CardSet.conta(posizione.getMano(g));
+        }
+    }
+
+    /** @return true se l'ultima preparazione ha vincoli sui semi ed è riuscita a rispettarli */
+    public boolean isVincolato() {
+        return vincolato;
+    }
+
+    /** Estrae k carte a caso tra le prime n di {@code mazzo}, lasciando le altre in testa */
+    private long pesca(int n, int k) {
+        long mano = CardSet.VUOTO;
+        for (int i = 0; i < k; i++) {
+            int j = random.nextInt(n);
+            mano |= 1L << mazzo[j];
+            mazzo[j] = mazzo[--n];
+        }
+        return mano;
+    }
+
+    /** Riempie {@code modi} dall'ultimo seme al primo */
+    private void contaModi() {
+        int d0 = carteDaDare[0];
+        int d1 = carteDaDare[1];
+        int d2 = carteDaDare[2];
+        for (int r0 = 0; r0 <= d0; r0++) {
+            for (int r1 = 0; r1 <= d1; r1++) {
+                for (int r2 = 0; r2 <= d2; r2++) {
+                    modi[SEMI][indice(r0, r1, r2)] = r0 == 0 && r1 == 0 && r2 == 0 ? 1 : 0;
+                }
+            }
+        }
+        for (int s = SEMI - 1; s >= 0; s--) {
+            int u = Long.bitCount(nascostePerSeme[s]);
+            for (int r0 = 0; r0 <= d0; r0++) {
+                for (int r1 = 0; r1 <= d1; r1++) {
+                    for (int r2 = 0; r2 <= d2; r2++) {
+                        long totale = 0;
+                        for (int x0 = massimo(s, 0, u, r0); x0 >= 0; x0--) {
+                            for (int x1 = massimo(s, 1, u - x0, r1); x1 >= 0; x1--) {
+                                int x2 = u - x0 - x1;
+                                if (isAmmissibile(s, 2, x2, r2)) {
+                                    totale += BINOMIALI[u][x0] * BINOMIALI[u - x0][x1]
+                                        * modi[s + 1][indice(r0 - x0, r1 - x1, r2 - x2)];
+                                }
+                            }
+                        }
+                        modi[s][indice(r0, r1, r2)] = totale;
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return massimo numero di carte del seme che il giocatore j può ricevere */
+    private int massimo(int seme, int j, int disponibili, int mancanti) {
+        return ammesso[seme][j] ? Math.min(disponibili, mancanti) : 0;
+    }
+
+    private boolean isAmmissibile(int seme, int j, int carte, int mancanti) {
+        return carte >= 0 && carte <= mancanti && (carte == 0 || ammesso[seme][j]);
+    }
+
+    private int indice(int r0, int r1, int r2) {
+        return (r0 * (carteDaDare[1] + 1) + r1) * (carteDaDare[2] + 1) + r2;
+    }
+}
@@ -0,0 +1,464 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.controller.ScoreCalculator;
+import it.uniroma1.tresette.controller.sim.Playout;
+import it.uniroma1.tresette.controller.sim.PoliticaPlayout;
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+
+import java.util.SplittableRandom;
+
+/**
+ * Risolutore a carte scoperte, per 2 o 4 giocatori.
+ * <p>
+ * Con due giocatori il mazzo è distribuito 20/20, quindi ognuno conosce la
+ * mano dell'altro (il complemento della propria e delle carte uscite) e il
+ * gioco è a informazione perfetta. Con quattro giocatori le mani nascoste
+ * vengono campionate da {@link StrategiaPIMC} e ogni mazzata campionata è
+ * risolta come se fosse a carte scoperte. Il risolutore esegue un minimax con
+ * potatura alfa-beta sui punti (in terzi) che la coppia 0 prenderà da qui a
+ * fine mano (i giocatori pari massimizzano, i dispari minimizzano), con:
+ * <ul>
+ *   <li>tabella di trasposizione indicizzata dalla chiave di Zobrist, che
+ *       esclude i punti già presi e quindi memorizza solo il valore futuro;</li>
+ *   <li>ordinamento delle mosse: prima la mossa della tabella, poi prese
+ *       vincenti e carte padrone, infine scarti poveri;</li>
+ *   <li>potatura delle carte equivalenti: due carte dello stesso seme nella
+ *       stessa mano, adiacenti per forza tra quelle ancora in gioco e con gli
+ *       stessi punti, portano allo stesso risultato e si prova solo la più debole.</li>
+ * </ul>
+ * La ricerca è ad approfondimento iterativo per prese: se il tempo a
+ * disposizione finisce prima della ricerca completa viene restituito il
+ * risultato dell'ultima iterazione conclusa, con le foglie stimate da un
+ * playout euristico, e {@link Risultato#isEsatto()} vale false.
+ * Le istanze non sono thread-safe.
+ */
+public class RisolutoreCarteScoperte {
+
+    /** Budget che non interrompe mai la ricerca: il risultato è sempre esatto */
+    public static final long SENZA_LIMITE = Long.MAX_VALUE;
+
+    private static final int N = Carta.NUMERO_CARTE;
+    private static final int INFINITO = 10_000;
+    private static final int MAX_MOSSE = N / 2;
+
+    // Per ogni carta: le carte dello stesso seme più deboli, dalla più forte
+    private static final int[][] PIU_DEBOLI = new int[N][];
+    // Per ogni carta: le carte dello stesso seme più forti
+    private static final long[] PIU_FORTI = new long[N];
+
+    static {
+        for (int c = 0; c < N; c++) {
+            int seme = Carta.indiceSeme(c);
+            int[] deboli = new int[Carta.CARTE_PER_SEME];
+            int quante = 0;
+            for (int forza = Carta.forza(c) - 1; forza >= 0; forza--) {
+                for (int d = seme * Carta.CARTE_PER_SEME; d < (seme + 1) * Carta.CARTE_PER_SEME; d++) {
+                    if (Carta.forza(d) == forza) {
+                        deboli[quante++] = d;
+                    }
+                }
+            }
+            PIU_DEBOLI[c] = java.util.Arrays.copyOf(deboli, quante);
+            for (int d = seme * Carta.CARTE_PER_SEME; d < (seme + 1) * Carta.CARTE_PER_SEME; d++) {
+                if (Carta.forza(d) > Carta.forza(c)) {
+                    PIU_FORTI[c] |= 1L << d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Esito della risoluzione di una posizione
+     */
+    public static final class Risultato {
+        private final int carta;
+        private final int terziCoppia0;
+        private final int terziCoppia1;
+        private final boolean esatto;
+        private final long nodi;
+        private final long millis;
+
+        Risultato(int carta, int terziCoppia0, int terziCoppia1, boolean esatto, long nodi, long millis) {
+            this.carta = carta;
+            this.terziCoppia0 = terziCoppia0;
+            this.terziCoppia1 = terziCoppia1;
+            this.esatto = esatto;
+            this.nodi = nodi;
+            this.millis = millis;
+        }
+
+        /** @return ordinale della carta migliore per il giocatore di turno */
+        public int getCarta() {
+            return carta;
+        }
+
+        /** @return terzi della coppia 0 a fine mano con gioco ottimo di tutti */
+        public int getTerziCoppia0() {
+            return terziCoppia0;
+        }
+
+        /** @return terzi della coppia 1 a fine mano con gioco ottimo di tutti */
+        public int getTerziCoppia1() {
+            return terziCoppia1;
+        }
+
+        /** @return true se la ricerca è arrivata a fine mano, false se il risultato è stimato */
+        public boolean isEsatto() {
+            return esatto;
+        }
+
+        /** @return nodi visitati */
+        public long getNodi() {
+            return nodi;
+        }
+
+        /** @return tempo impiegato in millisecondi */
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return Carta.perOrdinale(carta) + " -> " + terziCoppia0 + "/" + terziCoppia1 + " terzi"
+                + (esatto ? " (esatto" : " (stimato") + ", " + nodi + " nodi, " + millis + " ms)";
+        }
+    }
+
+    private final int numeroGiocatori;
+    private final TabellaTrasposizione tabella;
+    private final StatoCompatto stato;
+    private final Playout playout;
+    private final int[][] mosse = new int[N + 1][MAX_MOSSE];
+    private final int[][] priorita = new int[N + 1][MAX_MOSSE];
+    private final int[] valoriIterazione = new int[N];
+
+    private long nodi;
+    private long scadenza;
+    private boolean interrotto;
+    private int mossaRadice;
+
+    /**
+     * Crea un risolutore con una tabella di trasposizione da circa un milione di voci
+     *
+     * @param numeroGiocatori 2 o 4
+     */
+    public RisolutoreCarteScoperte(int numeroGiocatori) {
+        this(numeroGiocatori, new TabellaTrasposizioneArray(20));
+    }
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @param tabella tabella di trasposizione da usare
+     */
+    public RisolutoreCarteScoperte(int numeroGiocatori, TabellaTrasposizione tabella) {
+        this.numeroGiocatori = numeroGiocatori;
+        this.tabella = tabella;
+        this.stato = new StatoCompatto(numeroGiocatori);
+        this.playout = new Playout(numeroGiocatori, new SplittableRandom(0));
+    }
+
+    /**
+     * Cerca la carta migliore per il giocatore di turno
+     *
+     * @param posizione posizione da risolvere, con il numero di giocatori del risolutore; non viene modificata
+     * @param budgetMillis tempo massimo di ricerca in millisecondi, o {@link #SENZA_LIMITE}
+     * @return carta migliore ed esito a fine mano
+     * @throws IllegalArgumentException se il numero di giocatori della posizione è diverso
+     * @throws IllegalStateException se la mano è già finita
+     */
+    public Risultato risolvi(StatoCompatto posizione, long budgetMillis) {
+        long inizio = System.nanoTime();
+        prepara(posizione, inizio, budgetMillis);
+
+        int carteRimanenti = CardSet.conta(carteInMano());
+        int puntiRimanenti = puntiRimanenti();
+
+        // Se nessuna iterazione si conclude vale la scelta euristica, stimata con un playout
+        int carta = BasicAIStrategy.scegliCarta(stato.getMano(stato.getTurno()), stato.getSemeRichiesto(), stato.getTavolo());
+        int valore = stima();
+        boolean esatto = false;
+        // Approfondimento iterativo: completa la presa in corso, poi una presa in più per iterazione
+        int profondita = (numeroGiocatori - stato.getCarteSulTavolo()) % numeroGiocatori;
+        do {
+            profondita = Math.min(profondita + numeroGiocatori, carteRimanenti);
+            mossaRadice = -1;
+            int v = cerca(profondita, -INFINITO, INFINITO, 0);
+            if (interrotto) {
+                break;
+            }
+            carta = mossaRadice;
+            valore = v;
+            esatto = profondita >= carteRimanenti;
+        } while (!esatto);
+
+        int terzi0 = stato.getTerzi(0) + valore;
+        int terzi1 = stato.getTerzi(1) + puntiRimanenti - valore;
+        return new Risultato(carta, terzi0, terzi1, esatto, nodi, (System.nanoTime() - inizio) / 1_000_000L);
+    }
+
+    /**
+     * Valuta separatamente ogni carta legale del giocatore di turno, come serve
+     * a chi media i risultati su più mazzate campionate. Ogni mossa è cercata
+     * a finestra piena, con lo stesso approfondimento iterativo di
+     * {@link #risolvi(StatoCompatto, long)}; valgono i valori dell'ultima
+     * iterazione conclusa entro il budget.
+     *
+     * @param posizione posizione da valutare, non viene modificata
+     * @param budgetMillis tempo massimo di ricerca in millisecondi
+     * @param valori array indicizzato per ordinale: per ogni carta legale riceve
+     *               i terzi che la coppia del giocatore di turno prenderà da qui a fine mano
+     * @return numero di carte cercate dall'ultima iterazione conclusa, 0 se nessuna
+     *         si è conclusa e {@code valori} non è stato scritto
+     * @throws IllegalArgumentException se il numero di giocatori della posizione è diverso
+     * @throws IllegalStateException se la mano è già finita
+     */
+    public int valutaMosse(StatoCompatto posizione, long budgetMillis, int[] valori) {
+        prepara(posizione, System.nanoTime(), budgetMillis);
+
+        int carteRimanenti = CardSet.conta(carteInMano());
+        int puntiRimanenti = puntiRimanenti();
+        int coppia = stato.getTurno() & 1;
+        long legali = stato.mosseLegali();
+        long mano = stato.getMano(stato.getTurno());
+        long inGioco = carteInMano() | stato.getTavolo();
+
+        int completata = 0;
+        int profondita = (numeroGiocatori - stato.getCarteSulTavolo()) % numeroGiocatori;
+        do {
+            profondita = Math.min(profondita + numeroGiocatori, carteRimanenti);
+            for (long l = legali; l != 0; l &= l - 1) {
+                int carta = Long.numberOfTrailingZeros(l);
+                if (isEquivalenteAPiuDebole(carta, mano, inGioco)) {
+                    continue;
+                }
+                int prima = stato.getTerzi(0);
+                stato.gioca(carta);
+                int guadagno = stato.getTerzi(0) - prima;
+                int v = guadagno + cerca(profondita - 1, -INFINITO, INFINITO, 1);
+                stato.annulla();
+                if (interrotto) {
+                    break;
+                }
+                valoriIterazione[carta] = coppia == 0 ? v : puntiRimanenti - v;
+            }
+            if (interrotto) {
+                break;
+            }
+            System.arraycopy(valoriIterazione, 0, valori, 0, N);
+            completata = profondita;
+        } while (completata < carteRimanenti);
+
+        if (completata > 0) {
+            // Le carte equivalenti prendono il valore della più debole che le rappresenta
+            for (long l = legali; l != 0; l &= l - 1) {
+                int carta = Long.numberOfTrailingZeros(l);
+                int rappresentante = carta;
+                while (isEquivalenteAPiuDebole(rappresentante, mano, inGioco)) {
+                    rappresentante = piuDeboleInGioco(rappresentante, inGioco);
+                }
+                valori[carta] = valori[rappresentante];
+            }
+        }
+        return completata;
+    }
+
+    private void prepara(StatoCompatto posizione, long inizio, long budgetMillis) {
+        if (posizione.getNumeroGiocatori() != numeroGiocatori) {
+            throw new IllegalArgumentException("Il risolutore richiede " + numeroGiocatori + " giocatori");
+        }
+        if (posizione.isManoFinita()) {
+            throw new IllegalStateException("La mano è già finita");
+        }
+        stato.copiaDa(posizione);
+        tabella.nuovaRicerca();
+        nodi = 0;
+        interrotto = false;
+        scadenza = budgetMillis >= SENZA_LIMITE / 1_000_000L ? Long.MAX_VALUE : inizio + budgetMillis * 1_000_000L;
+    }
+
+    /** @return carte ancora in mano ai giocatori, come {@link CardSet} */
+    private long carteInMano() {
+        return stato.getMano(0) | stato.getMano(1) | stato.getMano(2) | stato.getMano(3);
+    }
+
+    /** @return terzi ancora da assegnare: carte in mano, carte sul tavolo e bonus dell'ultima presa */
+    private int puntiRimanenti() {
+        return CardSet.puntiInTerzi(carteInMano() | stato.getTavolo()) + ScoreCalculator.TERZI_ULTIMA_PRESA;
+    }
+
+    /**
+     * Minimax alfa-beta sui terzi futuri della coppia 0
+     *
+     * @return terzi che la coppia 0 prenderà da qui a fine mano (limite se fuori finestra)
+     */
+    private int cerca(int profondita, int alfa, int beta, int livello) {
+        if ((++nodi & 0xFFF) == 0 && System.nanoTime() > scadenza) {
+            interrotto = true;
+        }
+        if (interrotto) {
+            return 0;
+        }
+        long rimanenti = carteInMano();
+        if (rimanenti == CardSet.VUOTO) {
+            return 0;
+        }
+        if (profondita <= 0 && stato.getCarteSulTavolo() == 0) {
+            return stima();
+        }
+
+        int carteRimanenti = Long.bitCount(rimanenti);
+        int profonditaUtile = Math.min(profondita, carteRimanenti);
+        long chiave = stato.getChiave();
+        long voce = tabella.cerca(chiave);
+        int mossaTabella = TabellaTrasposizione.NESSUNA_MOSSA;
+        if (voce != TabellaTrasposizione.VUOTA) {
+            mossaTabella = TabellaTrasposizione.mossa(voce);
+            if (livello > 0 && TabellaTrasposizione.profondita(voce) >= profonditaUtile) {
+                int v = TabellaTrasposizione.valore(voce);
+                switch (TabellaTrasposizione.tipo(voce)) {
+                    case TabellaTrasposizione.ESATTO:
+                        return v;
+                    case TabellaTrasposizione.INFERIORE:
+                        alfa = Math.max(alfa, v);
+                        break;
+                    default:
+                        beta = Math.min(beta, v);
+                        break;
+                }
+                if (alfa >= beta) {
+                    return v;
+                }
+            }
+        }
+
+        int numeroMosse = generaMosse(livello, mossaTabella);
+        int[] candidate = mosse[livello];
+        boolean massimizza = (stato.getTurno() & 1) == 0;
+        int migliore = massimizza ? -INFINITO : INFINITO;
+        int mossaMigliore = candidate[0];
+        int a = alfa;
+        int b = beta;
+        for (int i = 0; i < numeroMosse; i++) {
+            int carta = candidate[i];
+            int prima = stato.getTerzi(0);
+            stato.gioca(carta);
+            int guadagno = stato.getTerzi(0) - prima;
+            int v = guadagno + cerca(profondita - 1, a - guadagno, b - guadagno, livello + 1);
+            stato.annulla();
+            if (interrotto) {
+                return 0;
+            }
+            if (massimizza ? v > migliore : v < migliore) {
+                migliore = v;
+                mossaMigliore = carta;
+                if (livello == 0) {
+                    mossaRadice = carta;
+                }
+            }
+            if (massimizza) {
+                a = Math.max(a, migliore);
+            } else {
+                b = Math.min(b, migliore);
+            }
+            if (a >= b) {
+                break;
+            }
+        }
+
+        int tipo = migliore <= alfa ? TabellaTrasposizione.SUPERIORE
+            : migliore >= beta ? TabellaTrasposizione.INFERIORE : TabellaTrasposizione.ESATTO;
+        tabella.salva(chiave, TabellaTrasposizione.voce(migliore, tipo, mossaMigliore, Math.min(profonditaUtile, 255)));
+        return migliore;
+    }
+
+    /** @return terzi futuri della coppia 0 stimati con un playout euristico */
+    private int stima() {
+        return Playout.coppia0(playout.giocaMano(stato, PoliticaPlayout.EURISTICA)) - stato.getTerzi(0);
+    }
+
+    /**
+     * Genera le mosse legali non equivalenti del giocatore di turno, ordinate
+     * dalla più promettente
+     *
+     * @return numero di mosse scritte in {@code mosse[livello]}
+     */
+    private int generaMosse(int livello, int mossaTabella) {
+        int turno = stato.getTurno();
+        long mano = stato.getMano(turno);
+        long avversari = stato.getMano((turno + 1) & 3) | stato.getMano((turno + 3) & 3);
+        long inGioco = carteInMano() | stato.getTavolo();
+        int[] candidate = mosse[livello];
+        int[] punteggi = priorita[livello];
+
+        // Carta che sta vincendo la presa in corso, punti sul tavolo e se è del compagno
+        int vincente = -1;
+        boolean vinceCompagno = false;
+        int puntiTavolo = 0;
+        for (int i = 0; i < stato.getCarteSulTavolo(); i++) {
+            int carta = stato.getCartaSulTavolo(i);
+            puntiTavolo += Carta.puntiInTerzi(carta);
+            if (vincente < 0 || (PIU_FORTI[vincente] & 1L << carta) != 0) {
+                vincente = carta;
+                vinceCompagno = ((stato.getPrimo() + i - turno) & 1) == 0;
+            }
+        }
+
+        int numero = 0;
+        for (long legali = stato.mosseLegali(); legali != 0; legali &= legali - 1) {
+            int carta = Long.numberOfTrailingZeros(legali);
+            if (isEquivalenteAPiuDebole(carta, mano, inGioco)) {
+                continue;
+            }
+            int punteggio;
+            if (carta == mossaTabella) {
+                punteggio = INFINITO;
+            } else if (vincente >= 0) {
+                // Risposta: vincere la presa con la carta minima, caricare punti sul
+                // compagno che sta vincendo, altrimenti scartare povero
+                if ((PIU_FORTI[vincente] & 1L << carta) != 0) {
+                    punteggio = 1000 + 20 * (puntiTavolo + Carta.puntiInTerzi(carta)) - Carta.forza(carta);
+                } else if (vinceCompagno) {
+                    punteggio = 500 + 20 * Carta.puntiInTerzi(carta) - Carta.forza(carta);
+                } else {
+                    punteggio = -20 * Carta.puntiInTerzi(carta) - Carta.forza(carta);
+                }
+            } else {
+                // Apertura: prima le carte padrone del seme, poi le più deboli
+                punteggio = (avversari & PIU_FORTI[carta]) == 0
+                    ? 500 + Carta.forza(carta)
+                    : -20 * Carta.puntiInTerzi(carta) - Carta.forza(carta);
+            }
+            // Ordinamento per inserzione: al più 20 mosse
+            int i = numero++;
+            while (i > 0 && punteggi[i - 1] < punteggio) {
+                candidate[i] = candidate[i - 1];
+                punteggi[i] = punteggi[i - 1];
+                i--;
+            }
+            candidate[i] = carta;
+            punteggi[i] = punteggio;
+        }
+        return numero;
+    }
+
+    /**
+     * Una carta è equivalente alla più debole successiva del suo seme se questa
+     * è nella stessa mano e vale gli stessi punti: nessuna carta in gioco sta tra le due
+     */
+    private static boolean isEquivalenteAPiuDebole(int carta, long mano, long inGioco) {
+        int debole = piuDeboleInGioco(carta, inGioco);
+        return debole >= 0 && (mano & 1L << debole) != 0 && Carta.puntiInTerzi(debole) == Carta.puntiInTerzi(carta);
+    }
+
+    /** @return la carta più forte del seme tra quelle in gioco più deboli di quella indicata, -1 se non ce ne sono */
+    private static int piuDeboleInGioco(int carta, long inGioco) {
+        for (int debole : PIU_DEBOLI[carta]) {
+            if ((inGioco & 1L << debole) != 0) {
+                return debole;
+            }
+        }
+        return -1;
+    }
+}
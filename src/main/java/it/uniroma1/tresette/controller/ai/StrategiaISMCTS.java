@@ -0,0 +1,458 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.controller.GameEngine;
+import it.uniroma1.tresette.controller.ScoreCalculator;
+import it.uniroma1.tresette.controller.sim.Playout;
+import it.uniroma1.tresette.controller.sim.PoliticaPlayout;
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Giocatore;
+import it.uniroma1.tresette.model.Seme;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strategia Information-Set Monte Carlo Tree Search, per 2 o 4 giocatori.
+ * <p>
+ * L'albero è costruito sull'insieme di informazione del giocatore di turno:
+ * i nodi sono sequenze di carte giocate, non mazzate. Ogni iterazione
+ * campiona una mazzata compatibile ({@link CampionatoreMani}), scende
+ * nell'albero tra le sole carte legali in quella mazzata scegliendo con UCB,
+ * espande una carta non ancora provata, completa la mano con un playout
+ * euristico e propaga i punti presi da ciascuna coppia. Ogni nodo conta
+ * anche quante volte la sua carta era disponibile, che sostituisce le visite
+ * del genitore nell'esplorazione di UCB. Fa eccezione la radice, dove chi
+ * decide ha sempre le stesse carte legali: lì vale la somma delle visite dei
+ * figli, e la radice stessa non ha statistiche da aggiornare.
+ * <p>
+ * Con più thread la ricerca è parallela sullo stesso albero: le statistiche
+ * dei nodi sono aggiornate con operazioni atomiche e i figli sono aggiunti
+ * con compare-and-set, senza lock. La visita di un nodo è contata già in
+ * discesa e la ricompensa solo a fine playout (perdita virtuale): finché un
+ * thread non ha finito il proprio playout quel ramo sembra peggiore, e gli
+ * altri thread tendono a esplorarne altri.
+ * <p>
+ * I nodi vivono in un'{@link ArenaNodi} di array primitivi allocata una volta
+ * e svuotata a ogni decisione: la ricerca non crea oggetti per nodo né per
+ * iterazione. Quando l'arena è piena l'albero smette di crescere e le
+ * iterazioni proseguono con i playout dalle foglie esistenti.
+ * <p>
+ * Tra due decisioni consecutive l'albero non viene buttato: la nuova radice
+ * è il nodo raggiunto dalle carte giocate nel frattempo, il suo sottoalbero
+ * è copiato nella seconda arena e il resto scartato. Perché il riuso
+ * funzioni ogni istanza deve decidere sempre per lo stesso posto al tavolo.
+ * <p>
+ * La ricerca continua finché scade il tempo a disposizione e gioca la carta
+ * più visitata. Dopo ogni decisione sono disponibili iterazioni al secondo,
+ * dimensione dell'albero e nodi ereditati dalla decisione precedente. Una
+ * decisione alla volta per istanza.
+ */
+public class StrategiaISMCTS implements AIStrategy {
+
+    /** Costante di esplorazione di UCB, con ricompense normalizzate in [0, 1] */
+    private static final double ESPLORAZIONE = 0.7;
+
+    /** Nodi di ciascuna delle due arene predefinite: circa 17 MB l'una */
+    private static final int CAPACITA_PREDEFINITA = 1 << 19;
+
+    private final GameEngine engine;
+    private final long budgetMillis;
+    private StatoCompatto esplorazione;
+    private final long[] giocate = new long[4];
+    private ArenaNodi arena;
+    private ArenaNodi riserva;
+    private StatoCompatto ultimaPosizione;
+    private int nodiRiusati;
+    private final Worker[] worker;
+    private final List<Worker> compiti;
+    private final ExecutorService esecutore;
+
+    private StatoCompatto posizione;
+    private int[] semiMancanti;
+    private int radice;
+    private int puntiRimanenti;
+    private long scadenza;
+    private long iterazioni;
+    private long nanosUltimaScelta;
+
+    /**
+     * @param engine motore da cui leggere la posizione in {@link #selezionaCarta}
+     * @param budgetMillis tempo di ricerca per decisione in millisecondi
+     */
+    public StrategiaISMCTS(GameEngine engine, long budgetMillis) {
+        this(engine, budgetMillis, 1);
+    }
+
+    /**
+     * @param engine motore da cui leggere la posizione in {@link #selezionaCarta}
+     * @param budgetMillis tempo di ricerca per decisione in millisecondi
+     * @param numeroThread thread che cercano in parallelo sullo stesso albero
+     */
+    public StrategiaISMCTS(GameEngine engine, long budgetMillis, int numeroThread) {
+        this(engine, budgetMillis, numeroThread, CAPACITA_PREDEFINITA, new SplittableRandom());
+    }
+
+    /**
+     * @param engine motore da cui leggere la posizione in {@link #selezionaCarta}
+     * @param budgetMillis tempo di ricerca per decisione in millisecondi
+     * @param numeroThread thread che cercano in parallelo sullo stesso albero
+     * @param capacitaNodi numero massimo di nodi dell'albero; sono allocate subito due arene di questa capacità
+     * @param random generatore da cui derivare quelli dei thread
+     */
+    public StrategiaISMCTS(GameEngine engine, long budgetMillis, int numeroThread, int capacitaNodi,
+                           SplittableRandom random) {
+        if (numeroThread < 1) {
+            throw new IllegalArgumentException("Numero di thread non valido: " + numeroThread);
+        }
+        this.engine = engine;
+        this.budgetMillis = budgetMillis;
+        this.arena = new ArenaNodi(capacitaNodi);
+        this.riserva = new ArenaNodi(capacitaNodi);
+        this.worker = new Worker[numeroThread];
+        for (int i = 0; i < numeroThread; i++) {
+            worker[i] = new Worker(random.split());
+        }
+        this.compiti = List.of(worker);
+        if (numeroThread == 1) {
+            this.esecutore = null;
+        } else {
+            AtomicInteger contatore = new AtomicInteger();
+            this.esecutore = Executors.newFixedThreadPool(numeroThread, r -> {
+                Thread thread = new Thread(r, "tresette-ismcts-" + contatore.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public int selezionaCarta(Giocatore giocatore, Seme semeRichiesto, List<Carta> carteGiocate) {
+        if (engine.getGiocatoreCorrente() != giocatore) {
+            throw new IllegalStateException("Non è il turno di " + giocatore.getNome());
+        }
+        int carta = scegliCarta(StatoCompatto.da(engine));
+        return CardSet.posizione(giocatore.getManoBits(), Carta.perOrdinale(carta));
+    }
+
+    /**
+     * Sceglie la carta del giocatore di turno. Della posizione usa solo
+     * informazioni pubbliche e la mano di chi gioca.
+     *
+     * @param posizione posizione corrente, non viene modificata
+     * @return ordinale della carta più visitata
+     */
+    public int scegliCarta(StatoCompatto posizione) {
+        return scegliCarta(posizione, CampionatoreMani.NESSUN_SEME_MANCANTE);
+    }
+
+    /**
+     * Come {@link #scegliCarta(StatoCompatto)}, campionando solo mazzate in
+     * cui nessuno ha i semi che ha già dimostrato di non avere
+     *
+     * @param posizione posizione corrente, non viene modificata
+     * @param semiMancanti per ogni giocatore la maschera dei semi che non ha, ad esempio da {@link TracciatoreCarte}
+     * @return ordinale della carta più visitata
+     */
+    public int scegliCarta(StatoCompatto posizione, int[] semiMancanti) {
+        long inizio = System.nanoTime();
+        this.posizione = posizione;
+        this.semiMancanti = semiMancanti;
+        this.scadenza = inizio + budgetMillis * 1_000_000L;
+        this.puntiRimanenti = CardSet.puntiInTerzi(carteInMano(posizione) | posizione.getTavolo())
+            + ScoreCalculator.TERZI_ULTIMA_PRESA;
+
+        if (!avanzaRadice(posizione)) {
+            arena.svuota();
+            radice = arena.alloca(-1, 1 - (posizione.getTurno() & 1), 0);
+            nodiRiusati = 0;
+        }
+        long legali = posizione.mosseLegali();
+        iterazioni = 0;
+        if (CardSet.conta(legali) > 1) {
+            cerca();
+            for (Worker w : worker) {
+                iterazioni += w.iterazioni;
+            }
+        }
+        nanosUltimaScelta = System.nanoTime() - inizio;
+        if (ultimaPosizione == null || ultimaPosizione.getNumeroGiocatori() != posizione.getNumeroGiocatori()) {
+            ultimaPosizione = new StatoCompatto(posizione.getNumeroGiocatori());
+            esplorazione = new StatoCompatto(posizione.getNumeroGiocatori());
+        }
+        ultimaPosizione.copiaDa(posizione);
+
+        int migliore = ArenaNodi.NESSUNO;
+        for (int figlio = arena.primoFiglio(radice); figlio != ArenaNodi.NESSUNO; figlio = arena.fratello(figlio)) {
+            if (migliore == ArenaNodi.NESSUNO || arena.visite(figlio) > arena.visite(migliore)) {
+                migliore = figlio;
+            }
+        }
+        return migliore != ArenaNodi.NESSUNO ? arena.carta(migliore) : Long.numberOfTrailingZeros(legali);
+    }
+
+    /**
+     * Cerca nell'albero della decisione precedente il nodo che corrisponde alla
+     * posizione attuale e, se c'è, ne fa la nuova radice copiandone il
+     * sottoalbero nell'arena di riserva
+     *
+     * @return true se l'albero è stato riusato
+     */
+    private boolean avanzaRadice(StatoCompatto posizione) {
+        if (ultimaPosizione == null || ultimaPosizione.getNumeroGiocatori() != posizione.getNumeroGiocatori()) {
+            return false;
+        }
+        // L'albero è costruito su ciò che sa chi decide: per un altro posto non vale
+        if (ultimaPosizione.getTurno() != posizione.getTurno()) {
+            return false;
+        }
+        // Carte uscite da ogni mano; una carta nuova in mano vuol dire nuova mazzata
+        int giocateTotali = 0;
+        for (int g = 0; g < posizione.getNumeroGiocatori(); g++) {
+            if ((posizione.getMano(g) & ~ultimaPosizione.getMano(g)) != 0) {
+                return false;
+            }
+            giocate[g] = ultimaPosizione.getMano(g) & ~posizione.getMano(g);
+            giocateTotali += CardSet.conta(giocate[g]);
+        }
+        esplorazione.copiaDa(ultimaPosizione);
+        int nodo = trovaDiscendente(radice, giocateTotali, posizione);
+        if (nodo == ArenaNodi.NESSUNO) {
+            return false;
+        }
+        riserva.svuota();
+        int nuovaRadice = riserva.copiaSottoalbero(arena, nodo,
+            posizione.getTerzi(0) - ultimaPosizione.getTerzi(0), posizione.getTerzi(1) - ultimaPosizione.getTerzi(1));
+        if (nuovaRadice == ArenaNodi.NESSUNO) {
+            return false;
+        }
+        ArenaNodi scartata = arena;
+        arena = riserva;
+        riserva = scartata;
+        radice = nuovaRadice;
+        nodiRiusati = arena.getUsati();
+        return true;
+    }
+
+    /**
+     * Scende dall'albero giocando su {@link #esplorazione} solo carte uscite
+     * dalla mano di chi è di turno, finché le ha giocate tutte
+     *
+     * @return il nodo che porta alla posizione indicata, {@link ArenaNodi#NESSUNO} se non è nell'albero
+     */
+    private int trovaDiscendente(int nodo, int daGiocare, StatoCompatto posizione) {
+        if (daGiocare == 0) {
+            boolean uguale = esplorazione.getChiave() == posizione.getChiave()
+                && esplorazione.getTerzi(0) == posizione.getTerzi(0)
+                && esplorazione.getTerzi(1) == posizione.getTerzi(1);
+            return uguale ? nodo : ArenaNodi.NESSUNO;
+        }
+        int turno = esplorazione.getTurno();
+        for (int figlio = arena.primoFiglio(nodo); figlio != ArenaNodi.NESSUNO; figlio = arena.fratello(figlio)) {
+            long carta = 1L << arena.carta(figlio);
+            if ((giocate[turno] & carta) == 0) {
+                continue;
+            }
+            giocate[turno] &= ~carta;
+            esplorazione.gioca(arena.carta(figlio));
+            int trovato = trovaDiscendente(figlio, daGiocare - 1, posizione);
+            esplorazione.annulla();
+            giocate[turno] |= carta;
+            if (trovato != ArenaNodi.NESSUNO) {
+                return trovato;
+            }
+        }
+        return ArenaNodi.NESSUNO;
+    }
+
+    /** Esegue le iterazioni fino alla scadenza, in parallelo se ci sono più thread */
+    private void cerca() {
+        if (esecutore == null) {
+            worker[0].call();
+            return;
+        }
+        try {
+            for (Future<Void> esito : esecutore.invokeAll(compiti)) {
+                esito.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore nella ricerca ISMCTS", e.getCause());
+        }
+    }
+
+    /**
+     * Thread di ricerca: campionatore, stato di lavoro e percorso propri,
+     * albero condiviso. I parametri della decisione sono letti dai campi
+     * della strategia, pubblicati prima dell'avvio dei compiti.
+     */
+    private final class Worker implements Callable<Void> {
+        private final SplittableRandom random;
+        private final CampionatoreMani campionatore;
+        private final int[] percorso = new int[Carta.NUMERO_CARTE + 1];
+        private StatoCompatto campione;
+        private long iterazioni;
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+            this.campionatore = new CampionatoreMani(random.split());
+        }
+
+        @Override
+        public Void call() {
+            if (campione == null || campione.getNumeroGiocatori() != posizione.getNumeroGiocatori()) {
+                campione = new StatoCompatto(posizione.getNumeroGiocatori());
+            }
+            campionatore.prepara(posizione, semiMancanti);
+            iterazioni = 0;
+            do {
+                itera();
+                iterazioni++;
+            } while (System.nanoTime() < scadenza && !Thread.currentThread().isInterrupted());
+            return null;
+        }
+
+        /** Una iterazione: campionamento, selezione, espansione, playout e propagazione */
+        private void itera() {
+            campionatore.campiona(campione);
+            // Le statistiche della radice non servono a nessuno: il percorso parte dai figli
+            int lunghezza = 0;
+            int nodo = radice;
+            while (!campione.isManoFinita()) {
+                long legali = campione.mosseLegali();
+                if (nodo != radice) {
+                    for (int figlio = arena.primoFiglio(nodo); figlio != ArenaNodi.NESSUNO; figlio = arena.fratello(figlio)) {
+                        if ((legali & 1L << arena.carta(figlio)) != 0) {
+                            arena.aggiungiDisponibilita(figlio);
+                        }
+                    }
+                }
+                int figlio = espandi(nodo, legali);
+                if (figlio != ArenaNodi.NESSUNO) {
+                    campione.gioca(arena.carta(figlio));
+                    percorso[lunghezza++] = figlio;
+                    break;
+                }
+                nodo = selezionaUCB(nodo, legali);
+                if (nodo == ArenaNodi.NESSUNO) {
+                    // Carte legali riservate da altri thread o arena piena
+                    break;
+                }
+                // Perdita virtuale: la visita conta subito, la ricompensa arriva col playout
+                arena.aggiungiVisita(nodo);
+                campione.gioca(arena.carta(nodo));
+                percorso[lunghezza++] = nodo;
+            }
+
+            Playout.completaMano(campione, PoliticaPlayout.EURISTICA);
+            int terzi0 = campione.getTerzi(0) - posizione.getTerzi(0);
+            for (int i = 0; i < lunghezza; i++) {
+                int n = percorso[i];
+                arena.aggiungiRicompensa(n, arena.coppia(n) == 0 ? terzi0 : puntiRimanenti - terzi0);
+            }
+        }
+
+        /**
+         * Riserva con compare-and-set una carta legale mai provata e aggiunge
+         * il suo nodo in testa ai figli
+         *
+         * @return il nuovo figlio, già visitato una volta, o {@link ArenaNodi#NESSUNO}
+         *         se tutte le carte legali hanno un figlio o l'arena è piena
+         */
+        private int espandi(int nodo, long legali) {
+            while (!arena.isPiena()) {
+                long carteFigli = arena.carteFigli(nodo);
+                long nonProvate = legali & ~carteFigli;
+                if (nonProvate == 0) {
+                    return ArenaNodi.NESSUNO;
+                }
+                for (int salta = random.nextInt(CardSet.conta(nonProvate)); salta > 0; salta--) {
+                    nonProvate &= nonProvate - 1;
+                }
+                int carta = Long.numberOfTrailingZeros(nonProvate);
+                if (!arena.riservaCarta(nodo, carteFigli, carta)) {
+                    continue;
+                }
+                int figlio = arena.alloca(carta, campione.getTurno() & 1, 1);
+                if (figlio != ArenaNodi.NESSUNO) {
+                    arena.aggiungiFiglio(nodo, figlio);
+                }
+                return figlio;
+            }
+            return ArenaNodi.NESSUNO;
+        }
+    }
+
+    /** @return il figlio legale con il valore UCB più alto, {@link ArenaNodi#NESSUNO} se nessun figlio è legale */
+    private int selezionaUCB(int nodo, long legali) {
+        // Alla radice le carte legali sono le stesse in ogni mazzata: al posto
+        // della disponibilità, che lì non si conta, basta la somma delle visite dei figli
+        int visiteRadice = 0;
+        if (nodo == radice) {
+            for (int figlio = arena.primoFiglio(nodo); figlio != ArenaNodi.NESSUNO; figlio = arena.fratello(figlio)) {
+                visiteRadice += arena.visite(figlio);
+            }
+        }
+        int migliore = ArenaNodi.NESSUNO;
+        double valoreMigliore = Double.NEGATIVE_INFINITY;
+        for (int figlio = arena.primoFiglio(nodo); figlio != ArenaNodi.NESSUNO; figlio = arena.fratello(figlio)) {
+            if ((legali & 1L << arena.carta(figlio)) == 0) {
+                continue;
+            }
+            int visite = arena.visite(figlio);
+            int disponibile = nodo == radice ? visiteRadice : arena.disponibilita(figlio);
+            double valore = (double) arena.somma(figlio) / ((double) visite * puntiRimanenti)
+                + ESPLORAZIONE * Math.sqrt(Math.log(disponibile) / visite);
+            if (valore > valoreMigliore) {
+                migliore = figlio;
+                valoreMigliore = valore;
+            }
+        }
+        return migliore;
+    }
+
+    private static long carteInMano(StatoCompatto stato) {
+        long carte = CardSet.VUOTO;
+        for (int g = 0; g < stato.getNumeroGiocatori(); g++) {
+            carte |= stato.getMano(g);
+        }
+        return carte;
+    }
+
+    /**
+     * Ferma i thread di ricerca; la strategia non è più utilizzabile
+     */
+    public void chiudi() {
+        if (esecutore != null) {
+            esecutore.shutdownNow();
+        }
+    }
+
+    /** @return iterazioni eseguite nell'ultima decisione, sommate su tutti i thread */
+    public long getIterazioni() {
+        return iterazioni;
+    }
+
+    /** @return iterazioni al secondo nell'ultima decisione */
+    public double getIterazioniAlSecondo() {
+        return nanosUltimaScelta == 0 ? 0 : iterazioni * 1e9 / nanosUltimaScelta;
+    }
+
+    /** @return nodi ereditati dalla decisione precedente all'inizio dell'ultima */
+    public int getNodiRiusati() {
+        return nodiRiusati;
+    }
+
+    /** @return nodi dell'albero costruito nell'ultima decisione, radice compresa */
+    public int getNodiAlbero() {
+        return arena.getUsati();
+    }
+}
@@ -0,0 +1,233 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.controller.GameEngine;
+import it.uniroma1.tresette.controller.sim.StatoCompatto;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Giocatore;
+import it.uniroma1.tresette.model.Seme;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strategia Perfect Information Monte Carlo per la modalità 4 giocatori.
+ * <p>
+ * A ogni decisione il giocatore di turno conosce solo la propria mano: le
+ * carte non ancora viste vengono ridistribuite a caso tra gli altri tre
+ * giocatori rispettando quante ne ha ciascuno e, se noti, i semi che non
+ * hanno; ogni mazzata campionata è valutata a carte scoperte da un
+ * {@link RisolutoreCarteScoperte} e vince la carta con la media più alta dei
+ * punti della propria coppia a fine mano.
+ * <p>
+ * Il campionamento è delegato a {@link CampionatoreMani}.
+ * Campionamento e risoluzione sono ripartiti tra più worker, ognuno con il
+ * proprio risolutore e il proprio generatore, finché scade il tempo a
+ * disposizione per la decisione. Il tempo di ogni risoluzione è limitato così
+ * che ogni worker valuti almeno {@value #CAMPIONI_PER_WORKER} mazzate; a fine
+ * mano le risoluzioni sono esatte e molto più rapide, e i campioni aumentano.
+ * I worker possono anche condividere una {@link TabellaTrasposizioneCondivisa}
+ * invece di avere ciascuno la propria: le posizioni di fine mano comuni a più
+ * mazzate sono risolte una volta sola.
+ */
+public class StrategiaPIMC implements AIStrategy {
+
+    private static final int N = Carta.NUMERO_CARTE;
+    private static final int NUMERO_GIOCATORI = 4;
+    /** Mazzate minime valutate da ogni worker per decisione */
+    private static final int CAMPIONI_PER_WORKER = 8;
+
+    private final GameEngine engine;
+    private final long budgetMillis;
+    private final Worker[] worker;
+    private final ExecutorService esecutore;
+    private final TabellaTrasposizioneCondivisa tabellaCondivisa;
+
+    private int campioniUltimaScelta;
+
+    /**
+     * @param engine motore da cui leggere la posizione in {@link #selezionaCarta}
+     * @param budgetMillis tempo massimo per decisione in millisecondi
+     * @param numeroWorker numero di thread di ricerca
+     */
+    public StrategiaPIMC(GameEngine engine, long budgetMillis, int numeroWorker) {
+        this(engine, budgetMillis, numeroWorker, null);
+    }
+
+    /**
+     * @param engine motore da cui leggere la posizione in {@link #selezionaCarta}
+     * @param budgetMillis tempo massimo per decisione in millisecondi
+     * @param numeroWorker numero di thread di ricerca
+     * @param tabellaCondivisa tabella di trasposizione comune a tutti i worker,
+     *                         ad esempio {@link TabellaTrasposizioneCondivisa#globale()};
+     *                         null per una tabella privata per worker
+     */
+    public StrategiaPIMC(GameEngine engine, long budgetMillis, int numeroWorker,
+                         TabellaTrasposizioneCondivisa tabellaCondivisa) {
+        if (numeroWorker < 1) {
+            throw new IllegalArgumentException("Numero di worker non valido: " + numeroWorker);
+        }
+        this.engine = engine;
+        this.budgetMillis = budgetMillis;
+        this.tabellaCondivisa = tabellaCondivisa;
+        this.worker = new Worker[numeroWorker];
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < numeroWorker; i++) {
+            TabellaTrasposizione tabella = tabellaCondivisa != null
+                ? tabellaCondivisa : new TabellaTrasposizioneArray(18);
+            worker[i] = new Worker(random.split(), tabella);
+        }
+        AtomicInteger contatore = new AtomicInteger();
+        this.esecutore = Executors.newFixedThreadPool(numeroWorker, r -> {
+            Thread thread = new Thread(r, "tresette-pimc-" + contatore.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int selezionaCarta(Giocatore giocatore, Seme semeRichiesto, List<Carta> carteGiocate) {
+        if (engine.getGiocatoreCorrente() != giocatore) {
+            throw new IllegalStateException("Non è il turno di " + giocatore.getNome());
+        }
+        int carta = scegliCarta(StatoCompatto.da(engine));
+        return CardSet.posizione(giocatore.getManoBits(), Carta.perOrdinale(carta));
+    }
+
+    /**
+     * Sceglie la carta del giocatore di turno. Della posizione usa solo
+     * informazioni pubbliche e la mano di chi gioca: le altre mani servono
+     * a sapere quali carte sono ancora in gioco e quante ne ha ciascuno.
+     *
+     * @param posizione posizione corrente a 4 giocatori, non viene modificata
+     * @return ordinale della carta scelta
+     * @throws IllegalArgumentException se la posizione non è a 4 giocatori
+     */
+    public int scegliCarta(StatoCompatto posizione) {
+        return scegliCarta(posizione, CampionatoreMani.NESSUN_SEME_MANCANTE);
+    }
+
+    /**
+     * Come {@link #scegliCarta(StatoCompatto)}, campionando solo mazzate in
+     * cui nessuno ha i semi che ha già dimostrato di non avere
+     *
+     * @param posizione posizione corrente a 4 giocatori, non viene modificata
+     * @param semiMancanti per ogni giocatore la maschera dei semi che non ha, ad esempio da {@link TracciatoreCarte}
+     * @return ordinale della carta scelta
+     * @throws IllegalArgumentException se la posizione non è a 4 giocatori
+     */
+    public int scegliCarta(StatoCompatto posizione, int[] semiMancanti) {
+        if (posizione.getNumeroGiocatori() != NUMERO_GIOCATORI) {
+            throw new IllegalArgumentException("La strategia PIMC richiede 4 giocatori");
+        }
+        long legali = posizione.mosseLegali();
+        campioniUltimaScelta = 0;
+        if (CardSet.conta(legali) == 1) {
+            return Long.numberOfTrailingZeros(legali);
+        }
+
+        if (tabellaCondivisa != null) {
+            tabellaCondivisa.avanzaGenerazione();
+        }
+        long scadenza = System.nanoTime() + budgetMillis * 1_000_000L;
+        long budgetCampione = Math.max(1, budgetMillis / CAMPIONI_PER_WORKER);
+        List<Callable<Void>> compiti = new ArrayList<>(worker.length);
+        for (Worker w : worker) {
+            compiti.add(() -> {
+                w.esegui(posizione, semiMancanti, scadenza, budgetCampione);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> esito : esecutore.invokeAll(compiti)) {
+                esito.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore nella ricerca PIMC", e.getCause());
+        }
+
+        // Somma dei risultati dei worker e scelta della media migliore
+        int migliore = -1;
+        long sommaMigliore = 0;
+        for (long l = legali; l != 0; l &= l - 1) {
+            int carta = Long.numberOfTrailingZeros(l);
+            long somma = 0;
+            for (Worker w : worker) {
+                somma += w.somme[carta];
+            }
+            if (migliore < 0 || somma > sommaMigliore) {
+                migliore = carta;
+                sommaMigliore = somma;
+            }
+        }
+        for (Worker w : worker) {
+            campioniUltimaScelta += w.campioni;
+        }
+        if (campioniUltimaScelta == 0) {
+            return BasicAIStrategy.scegliCarta(posizione.getMano(posizione.getTurno()),
+                                               posizione.getSemeRichiesto(), posizione.getTavolo());
+        }
+        return migliore;
+    }
+
+    /** @return mazzate valutate nell'ultima decisione */
+    public int getCampioniUltimaScelta() {
+        return campioniUltimaScelta;
+    }
+
+    /**
+     * Ferma i thread di ricerca; la strategia non è più utilizzabile
+     */
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+
+    /**
+     * Stato di un thread di ricerca: risolutore, buffer del campionamento e
+     * somme dei valori delle carte, riusati tra le decisioni
+     */
+    private static final class Worker {
+        private final CampionatoreMani campionatore;
+        private final RisolutoreCarteScoperte risolutore;
+        private final StatoCompatto campione = new StatoCompatto(NUMERO_GIOCATORI);
+        private final int[] valori = new int[N];
+        private final long[] somme = new long[N];
+        private int campioni;
+
+        Worker(SplittableRandom random, TabellaTrasposizione tabella) {
+            this.campionatore = new CampionatoreMani(random);
+            this.risolutore = new RisolutoreCarteScoperte(NUMERO_GIOCATORI, tabella);
+        }
+
+        /** Campiona e valuta mazzate fino alla scadenza, accumulando le somme per carta */
+        void esegui(StatoCompatto posizione, int[] semiMancanti, long scadenza, long budgetCampione) {
+            Arrays.fill(somme, 0L);
+            campionatore.prepara(posizione, semiMancanti);
+            campioni = 0;
+            long legali = posizione.mosseLegali();
+            long adesso;
+            while ((adesso = System.nanoTime()) < scadenza && !Thread.currentThread().isInterrupted()) {
+                campionatore.campiona(campione);
+                long rimasto = (scadenza - adesso) / 1_000_000L;
+                if (risolutore.valutaMosse(campione, Math.min(budgetCampione, Math.max(1, rimasto)), valori) == 0) {
+                    continue;
+                }
+                for (long l = legali; l != 0; l &= l - 1) {
+                    int carta = Long.numberOfTrailingZeros(l);
+                    somme[carta] += valori[carta];
+                }
+                campioni++;
+            }
+        }
+    }
+}
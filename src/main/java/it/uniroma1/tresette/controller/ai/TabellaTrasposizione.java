@@ -0,0 +1,84 @@
+package it.uniroma1.tresette.controller.ai;
+
+/**
+ * Tabella di trasposizione per le ricerche sulle posizioni di
+ * {@link it.uniroma1.tresette.controller.sim.StatoCompatto}, indicizzata dalla
+ * chiave di {@link it.uniroma1.tresette.controller.sim.Zobrist}.
+ * <p>
+ * Ogni voce è impacchettata in un {@code long} (vedi {@link #voce}): valore,
+ * tipo di limite, mossa migliore e profondità. Il valore {@link #VUOTA} indica
+ * che la posizione non è presente. Le implementazioni possono sostituire o
+ * scartare le voci, quindi una ricerca non deve mai contare su un salvataggio.
+ */
+public interface TabellaTrasposizione {
+
+    /** Nessuna voce per la chiave cercata */
+    long VUOTA = 0L;
+
+    /** Il valore è esatto */
+    int ESATTO = 1;
+    /** Il valore è un limite inferiore (taglio beta) */
+    int INFERIORE = 2;
+    /** Il valore è un limite superiore (nessuna mossa ha superato alfa) */
+    int SUPERIORE = 3;
+
+    /** Mossa assente */
+    int NESSUNA_MOSSA = 63;
+
+    /**
+     * @param chiave chiave di Zobrist della posizione
+     * @return la voce salvata, {@link #VUOTA} se assente
+     */
+    long cerca(long chiave);
+
+    /**
+     * Salva il risultato della ricerca di una posizione
+     *
+     * @param chiave chiave di Zobrist della posizione
+     * @param voce voce costruita con {@link #voce(int, int, int, int)}
+     */
+    void salva(long chiave, long voce);
+
+    /** Svuota la tabella */
+    void svuota();
+
+    /**
+     * Segnala l'inizio di una nuova ricerca. Le voci restano valide, ma chi
+     * tiene conto della loro età può preferire di sostituire quelle vecchie.
+     */
+    default void nuovaRicerca() {
+    }
+
+    /**
+     * Impacchetta una voce
+     *
+     * @param valore valore della posizione (-32768..32767)
+     * @param tipo {@link #ESATTO}, {@link #INFERIORE} o {@link #SUPERIORE}
+     * @param mossa ordinale della mossa migliore o {@link #NESSUNA_MOSSA}
+     * @param profondita profondità della ricerca (0-255)
+     * @return la voce, mai uguale a {@link #VUOTA}
+     */
+    static long voce(int valore, int tipo, int mossa, int profondita) {
+        return (valore & 0xFFFFL) | (long) tipo << 16 | (long) mossa << 18 | (long) profondita << 24;
+    }
+
+    /** @return valore della voce */
+    static int valore(long voce) {
+        return (short) voce;
+    }
+
+    /** @return tipo di limite della voce */
+    static int tipo(long voce) {
+        return (int) (voce >>> 16) & 3;
+    }
+
+    /** @return mossa migliore della voce */
+    static int mossa(long voce) {
+        return (int) (voce >>> 18) & 63;
+    }
+
+    /** @return profondità della voce */
+    static int profondita(long voce) {
+        return (int) (voce >>> 24) & 0xFF;
+    }
+}
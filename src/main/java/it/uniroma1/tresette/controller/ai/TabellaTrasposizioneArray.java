@@ -0,0 +1,50 @@
+package it.uniroma1.tresette.controller.ai;
+
+import java.util.Arrays;
+
+/**
+ * Tabella di trasposizione su due array paralleli (chiavi e voci) con
+ * indirizzamento diretto: la voce di una chiave sta nello slot dato dai suoi
+ * bit bassi. In caso di collisione si tiene la voce con profondità maggiore,
+ * perché rappresenta più lavoro di ricerca. Non è thread-safe.
+ */
+public class TabellaTrasposizioneArray implements TabellaTrasposizione {
+
+    private final long[] chiavi;
+    private final long[] voci;
+    private final int maschera;
+
+    /**
+     * @param bitIndice log2 del numero di slot (ad esempio 20 per circa un milione)
+     */
+    public TabellaTrasposizioneArray(int bitIndice) {
+        if (bitIndice < 1 || bitIndice > 30) {
+            throw new IllegalArgumentException("Dimensione tabella non valida: " + bitIndice);
+        }
+        this.chiavi = new long[1 << bitIndice];
+        this.voci = new long[1 << bitIndice];
+        this.maschera = (1 << bitIndice) - 1;
+    }
+
+    @Override
+    public long cerca(long chiave) {
+        int slot = (int) chiave & maschera;
+        return chiavi[slot] == chiave ? voci[slot] : VUOTA;
+    }
+
+    @Override
+    public void salva(long chiave, long voce) {
+        int slot = (int) chiave & maschera;
+        if (chiavi[slot] == chiave || voci[slot] == VUOTA
+                || TabellaTrasposizione.profondita(voce) >= TabellaTrasposizione.profondita(voci[slot])) {
+            chiavi[slot] = chiave;
+            voci[slot] = voce;
+        }
+    }
+
+    @Override
+    public void svuota() {
+        Arrays.fill(chiavi, 0L);
+        Arrays.fill(voci, VUOTA);
+    }
+}
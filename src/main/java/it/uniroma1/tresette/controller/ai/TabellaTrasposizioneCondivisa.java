@@ -0,0 +1,129 @@
+package it.uniroma1.tresette.controller.ai;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tabella di trasposizione condivisa tra più thread, senza lock.
+ * <p>
+ * Usa la verifica a XOR delle tabelle lockless: ogni voce occupa due
+ * {@code long}, la voce e la chiave combinata con la voce in XOR. Come
+ * {@link TabellaTrasposizioneOffHeap} sta in un {@link ByteBuffer} diretto,
+ * fuori dallo heap, e le parole sono lette e scritte con accesso opaco. Le due
+ * parole sono lette e scritte atomicamente ma separatamente, quindi due
+ * thread che salvano nello stesso posto possono lasciare le parole di voci
+ * diverse; in quel caso lo XOR non restituisce più la chiave e la lettura
+ * la tratta come assente. Un risultato sbagliato diventa così solo una voce
+ * persa, e nessun thread aspetta mai gli altri.
+ * <p>
+ * Bucket e sostituzione sono quelli di {@link TabellaTrasposizioneOffHeap}:
+ * quattro voci per bucket, si sostituisce la meno profonda tenendo conto
+ * dell'età. La generazione non avanza a ogni ricerca, perché con molti
+ * risolutori insieme non avrebbe senso: la fa avanzare chi possiede la
+ * tabella con {@link #avanzaGenerazione()}, ad esempio a ogni decisione.
+ * <p>
+ * {@link #globale()} restituisce un'istanza unica per processo, da dare a
+ * tutti i risolutori che lavorano in parallelo così che le posizioni risolte
+ * da uno servano anche agli altri.
+ */
+public class TabellaTrasposizioneCondivisa implements TabellaTrasposizione {
+
+    /** Dimensione massima: un solo buffer è indirizzato con un int */
+    public static final int MAX_MEGABYTE = 1024;
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int VOCI_PER_BUCKET = 4;
+    private static final int BYTE_PER_VOCE = 16;
+    private static final int BYTE_PER_BUCKET = VOCI_PER_BUCKET * BYTE_PER_VOCE;
+    private static final int PESO_ETA = 8;
+    private static final long MASCHERA_VOCE = 0xFFFF_FFFFL;
+
+    private final ByteBuffer dati;
+    private final long mascheraBucket;
+    private volatile int generazione;
+
+    /** Istanza per processo, creata al primo uso */
+    private static final class Globale {
+        static final TabellaTrasposizioneCondivisa ISTANZA =
+            new TabellaTrasposizioneCondivisa(Integer.getInteger("tresette.tabella.condivisa.mb", 64));
+    }
+
+    /**
+     * @param megabyte memoria da riservare, arrotondata per difetto alla potenza di due
+     * @throws IllegalArgumentException se la dimensione non è tra 1 e {@value #MAX_MEGABYTE}
+     */
+    public TabellaTrasposizioneCondivisa(int megabyte) {
+        if (megabyte < 1 || megabyte > MAX_MEGABYTE) {
+            throw new IllegalArgumentException("Dimensione tabella non valida: " + megabyte + " MB");
+        }
+        int bucket = Integer.highestOneBit((int) ((long) megabyte * 1024 * 1024 / BYTE_PER_BUCKET));
+        this.dati = ByteBuffer.allocateDirect(bucket * BYTE_PER_BUCKET);
+        this.mascheraBucket = bucket - 1;
+    }
+
+    /**
+     * Tabella condivisa da tutto il processo. La dimensione si configura con
+     * {@code -Dtresette.tabella.condivisa.mb}, 64 MB se non indicata.
+     *
+     * @return l'istanza unica
+     */
+    public static TabellaTrasposizioneCondivisa globale() {
+        return Globale.ISTANZA;
+    }
+
+    @Override
+    public long cerca(long chiave) {
+        int base = (int) (chiave & mascheraBucket) * BYTE_PER_BUCKET;
+        for (int i = base; i < base + BYTE_PER_BUCKET; i += BYTE_PER_VOCE) {
+            long salvata = (long) LONG.getOpaque(dati, i + 8);
+            if (salvata != VUOTA && ((long) LONG.getOpaque(dati, i) ^ salvata) == chiave) {
+                return salvata & MASCHERA_VOCE;
+            }
+        }
+        return VUOTA;
+    }
+
+    @Override
+    public void salva(long chiave, long voce) {
+        int base = (int) (chiave & mascheraBucket) * BYTE_PER_BUCKET;
+        int corrente = generazione;
+        int sostituita = base;
+        int pregioMinimo = Integer.MAX_VALUE;
+        for (int i = base; i < base + BYTE_PER_BUCKET; i += BYTE_PER_VOCE) {
+            long salvata = (long) LONG.getOpaque(dati, i + 8);
+            if (salvata == VUOTA || ((long) LONG.getOpaque(dati, i) ^ salvata) == chiave) {
+                sostituita = i;
+                break;
+            }
+            int eta = (corrente - (int) (salvata >>> 32)) & 0xFF;
+            int pregio = TabellaTrasposizione.profondita(salvata) - PESO_ETA * eta;
+            if (pregio < pregioMinimo) {
+                pregioMinimo = pregio;
+                sostituita = i;
+            }
+        }
+        long nuova = voce & MASCHERA_VOCE | (long) corrente << 32;
+        LONG.setOpaque(dati, sostituita + 8, nuova);
+        LONG.setOpaque(dati, sostituita, chiave ^ nuova);
+    }
+
+    /**
+     * Le voci salvate finora diventano le prime da sostituire. Non serve
+     * sincronizzarsi con i thread che stanno cercando.
+     */
+    public void avanzaGenerazione() {
+        generazione = (generazione + 1) & 0xFF;
+    }
+
+    /** Svuota la tabella; da chiamare quando nessun thread la sta usando */
+    @Override
+    public void svuota() {
+        for (int i = 0; i < dati.capacity(); i += Long.BYTES) {
+            dati.putLong(i, 0L);
+        }
+        generazione = 0;
+    }
+}
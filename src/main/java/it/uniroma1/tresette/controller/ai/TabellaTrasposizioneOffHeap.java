@@ -0,0 +1,112 @@
+package it.uniroma1.tresette.controller.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Tabella di trasposizione fuori dallo heap, in un {@link ByteBuffer} diretto
+ * di dimensione fissa: anche centinaia di MB non pesano sul garbage collector
+ * né sulle sue pause.
+ * <p>
+ * Le voci sono raggruppate in bucket da {@value #VOCI_PER_BUCKET}, ognuna con
+ * chiave e voce in due {@code long} (64 byte per bucket, una linea di cache);
+ * i bit bassi della chiave scelgono il bucket. Ogni voce salvata porta anche
+ * la generazione della ricerca che l'ha scritta ({@link #nuovaRicerca()}).
+ * Se la chiave non è nel bucket e non ci sono posti liberi si sostituisce la
+ * voce meno preziosa: profondità bassa e ricerca vecchia, con ogni
+ * generazione di distanza che pesa come {@value #PESO_ETA} livelli di
+ * profondità. Non è thread-safe.
+ */
+public class TabellaTrasposizioneOffHeap implements TabellaTrasposizione {
+
+    /** Dimensione massima: un solo buffer è indirizzato con un int */
+    public static final int MAX_MEGABYTE = 1024;
+
+    private static final int VOCI_PER_BUCKET = 4;
+    private static final int BYTE_PER_VOCE = 16;
+    private static final int BYTE_PER_BUCKET = VOCI_PER_BUCKET * BYTE_PER_VOCE;
+    private static final int PESO_ETA = 8;
+    private static final long MASCHERA_VOCE = 0xFFFF_FFFFL;
+
+    private final ByteBuffer buffer;
+    private final long mascheraBucket;
+    private int generazione;
+
+    /**
+     * @param megabyte memoria da riservare, arrotondata per difetto alla potenza di due
+     * @throws IllegalArgumentException se la dimensione non è tra 1 e {@value #MAX_MEGABYTE}
+     */
+    public TabellaTrasposizioneOffHeap(int megabyte) {
+        if (megabyte < 1 || megabyte > MAX_MEGABYTE) {
+            throw new IllegalArgumentException("Dimensione tabella non valida: " + megabyte + " MB");
+        }
+        int bucket = Integer.highestOneBit((int) ((long) megabyte * 1024 * 1024 / BYTE_PER_BUCKET));
+        this.buffer = ByteBuffer.allocateDirect(bucket * BYTE_PER_BUCKET).order(ByteOrder.nativeOrder());
+        this.mascheraBucket = bucket - 1;
+    }
+
+    @Override
+    public long cerca(long chiave) {
+        int base = (int) (chiave & mascheraBucket) * BYTE_PER_BUCKET;
+        for (int i = base; i < base + BYTE_PER_BUCKET; i += BYTE_PER_VOCE) {
+            long salvata = buffer.getLong(i + 8);
+            if (salvata != VUOTA && buffer.getLong(i) == chiave) {
+                // Una voce ancora utile torna giovane
+                if (generazione(salvata) != generazione) {
+                    buffer.putLong(i + 8, conGenerazione(salvata));
+                }
+                return salvata & MASCHERA_VOCE;
+            }
+        }
+        return VUOTA;
+    }
+
+    @Override
+    public void salva(long chiave, long voce) {
+        int base = (int) (chiave & mascheraBucket) * BYTE_PER_BUCKET;
+        int sostituita = base;
+        int pregioMinimo = Integer.MAX_VALUE;
+        for (int i = base; i < base + BYTE_PER_BUCKET; i += BYTE_PER_VOCE) {
+            long salvata = buffer.getLong(i + 8);
+            if (salvata == VUOTA || buffer.getLong(i) == chiave) {
+                sostituita = i;
+                break;
+            }
+            int eta = (generazione - generazione(salvata)) & 0xFF;
+            int pregio = TabellaTrasposizione.profondita(salvata) - PESO_ETA * eta;
+            if (pregio < pregioMinimo) {
+                pregioMinimo = pregio;
+                sostituita = i;
+            }
+        }
+        buffer.putLong(sostituita, chiave);
+        buffer.putLong(sostituita + 8, conGenerazione(voce & MASCHERA_VOCE));
+    }
+
+    /** Le voci delle ricerche precedenti diventano le prime da sostituire */
+    @Override
+    public void nuovaRicerca() {
+        generazione = (generazione + 1) & 0xFF;
+    }
+
+    @Override
+    public void svuota() {
+        for (int i = 0; i < buffer.capacity(); i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        generazione = 0;
+    }
+
+    /** @return byte riservati fuori dallo heap */
+    public int getByte() {
+        return buffer.capacity();
+    }
+
+    private long conGenerazione(long voce) {
+        return voce & MASCHERA_VOCE | (long) generazione << 32;
+    }
+
+    private static int generazione(long salvata) {
+        return (int) (salvata >>> 32) & 0xFF;
+    }
+}
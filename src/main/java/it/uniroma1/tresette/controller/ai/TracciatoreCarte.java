@@ -0,0 +1,133 @@
+package it.uniroma1.tresette.controller.ai;
+
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.observer.GameState;
+import it.uniroma1.tresette.model.observer.GameStateObserver;
+
+/**
+ * Tiene traccia di ciò che ogni giocatore ha rivelato nella mano in corso:
+ * le carte uscite e i semi a cui non ha risposto. Chi non risponde al seme
+ * della prima carta della presa dimostra di non averne più, e da lì alla fine
+ * della mano nessuna mazzata campionata può dargliene
+ * ({@link CampionatoreMani#prepara}).
+ * <p>
+ * Si aggiorna con le notifiche della partita: ogni carta giocata è
+ * attribuita al posto annunciato dall'ultimo cambio di turno, non al nome
+ * del giocatore, che l'utente può scegliere uguale a quello di un'AI. Le
+ * carte arrivano in ordine e ogni presa ha una carta per giocatore, quindi
+ * la posizione di una carta nella presa si ricava dal loro numero. La
+ * distribuzione delle carte e una nuova partita azzerano tutto. Come gli
+ * altri observer va usato dal thread che notifica gli eventi.
+ */
+public class TracciatoreCarte implements GameStateObserver {
+
+    private final int numeroGiocatori;
+    private final int[] semiMancanti = new int[4];
+    private long uscite = CardSet.VUOTO;
+    private int carteUscite;
+    private int semeRichiesto;
+    private int giocatoreDiTurno = -1;
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     */
+    public TracciatoreCarte(int numeroGiocatori) {
+        this.numeroGiocatori = numeroGiocatori;
+    }
+
+    /** Dimentica quanto osservato, ad esempio a ogni nuova mano */
+    public void azzera() {
+        for (int g = 0; g < semiMancanti.length; g++) {
+            semiMancanti[g] = 0;
+        }
+        uscite = CardSet.VUOTO;
+        carteUscite = 0;
+        giocatoreDiTurno = -1;
+    }
+
+    /**
+     * @param giocatore indice del giocatore
+     * @return maschera dei semi che il giocatore ha dimostrato di non avere, bit i per il seme di indice i
+     */
+    public int getSemiMancanti(int giocatore) {
+        return semiMancanti[giocatore];
+    }
+
+    /**
+     * @return copia dei semi mancanti di tutti i giocatori, da passare alle strategie
+     */
+    public int[] copiaSemiMancanti() {
+        return semiMancanti.clone();
+    }
+
+    /**
+     * @return carte giocate nella mano in corso come {@link CardSet}
+     */
+    public long getUscite() {
+        return uscite;
+    }
+
+    /**
+     * Carte che il giocatore potrebbe ancora avere secondo quanto osservato
+     *
+     * @param giocatore indice del giocatore
+     * @param mano mano di chi osserva come {@link CardSet}, esclusa se il giocatore è un altro
+     * @return carte compatibili come {@link CardSet}
+     */
+    public long possibili(int giocatore, long mano) {
+        long possibili = CardSet.MAZZO_COMPLETO & ~uscite & ~mano;
+        for (int s = 0; s < 4; s++) {
+            if ((semiMancanti[giocatore] & 1 << s) != 0) {
+                possibili &= ~CardSet.maschera(s);
+            }
+        }
+        return possibili;
+    }
+
+    @Override
+    public void onGameStateChanged(GameState nuovoStato) {
+        if (nuovoStato == GameState.DISTRIBUZIONE_CARTE || nuovoStato == GameState.NON_INIZIATO) {
+            azzera();
+        }
+    }
+
+    @Override
+    public void onCartaGiocata(Carta carta, String nomeGiocatore) {
+        int seme = Carta.indiceSeme(carta.getOrdinale());
+        if (carteUscite % numeroGiocatori == 0) {
+            semeRichiesto = seme;
+        } else if (seme != semeRichiesto && giocatoreDiTurno >= 0) {
+            semiMancanti[giocatoreDiTurno] |= 1 << semeRichiesto;
+        }
+        uscite |= CardSet.bit(carta);
+        carteUscite++;
+        // Finché non arriva il prossimo turno non si sa di chi sia la carta successiva
+        giocatoreDiTurno = -1;
+    }
+
+    @Override
+    public void onPunteggiAggiornati(double punteggioCoppia1, double punteggioCoppia2) {
+        // Non serve al tracciamento
+    }
+
+    @Override
+    public void onTurnoCambiato(String nomeGiocatore, int indiceGiocatore) {
+        giocatoreDiTurno = indiceGiocatore;
+    }
+
+    @Override
+    public void onFineMano(String vincitore, double puntiMano) {
+        // Non serve al tracciamento
+    }
+
+    @Override
+    public void onPausaToggled(boolean inPausa) {
+        // Non serve al tracciamento
+    }
+
+    @Override
+    public void onFineManoCompleta(int numeroMano, double punteggioCoppia1, double punteggioCoppia2) {
+        // Non serve al tracciamento
+    }
+}
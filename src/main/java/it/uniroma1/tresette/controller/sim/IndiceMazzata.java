@@ -0,0 +1,383 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+
+import java.math.BigInteger;
+import java.util.SplittableRandom;
+
+/**
+ * Numerazione densa delle mazzate con il sistema combinatorio dei numeri.
+ * <p>
+ * Una mazzata è data dalle mani dei giocatori come {@link CardSet}. Ogni mano
+ * viene classificata in ordine colessicografico tra le carte non ancora
+ * assegnate ai giocatori precedenti; l'ultima mano è il complemento e non
+ * contribuisce all'indice. Gli indici parziali formano un numero a base mista:
+ * <ul>
+ *   <li>2 giocatori: {@code r0} in [0, C(40,20)), circa 1,4·10<sup>11</sup>;</li>
+ *   <li>4 giocatori: {@code (r0 · C(30,10) + r1) · C(20,10) + r2}, circa
+ *       4,7·10<sup>21</sup>, che non sta in un {@code long}.</li>
+ * </ul>
+ * Per questo l'indice è una {@link Chiave} da 16 byte: {@code alto} contiene
+ * la cifra della prima mano e {@code basso} il resto, così che l'indice denso
+ * sia {@code alto · radiceBasso + basso}. Tutte le operazioni su mani già
+ * esistenti lavorano su array forniti dal chiamante, senza allocazioni.
+ */
+public final class IndiceMazzata {
+
+    private static final int N = Carta.NUMERO_CARTE;
+    // BINOMIALE[n][k] per n <= 40, k <= 20: C(40,20) sta in un long
+    private static final long[][] BINOMIALE = new long[N + 1][N / 2 + 1];
+
+    static {
+        for (int n = 0; n <= N; n++) {
+            BINOMIALE[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, N / 2); k++) {
+                BINOMIALE[n][k] = BINOMIALE[n - 1][k - 1] + BINOMIALE[n - 1][k];
+            }
+        }
+    }
+
+    /** Numero di mazzate distinte con 2 giocatori: C(40,20) */
+    public static final long MAZZATE_DUE_GIOCATORI = BINOMIALE[40][20];
+    /** Radice della cifra alta con 4 giocatori: C(40,10) */
+    public static final long RADICE_ALTO_QUATTRO_GIOCATORI = BINOMIALE[40][10];
+    /** Radice della cifra bassa con 4 giocatori: C(30,10) · C(20,10) */
+    public static final long RADICE_BASSO_QUATTRO_GIOCATORI = BINOMIALE[30][10] * BINOMIALE[20][10];
+
+    private static final long RADICE_TERZA_MANO = BINOMIALE[20][10];
+
+    private IndiceMazzata() {}
+
+    /**
+     * Indice di una mazzata: 16 byte confrontabili e usabili come chiave di mappa.
+     */
+    public static final class Chiave implements Comparable<Chiave> {
+        private final long alto;
+        private final long basso;
+
+        /**
+         * @param alto cifra della prima mano (0 con 2 giocatori)
+         * @param basso cifra delle mani successive
+         */
+        public Chiave(long alto, long basso) {
+            this.alto = alto;
+            this.basso = basso;
+        }
+
+        /** @return cifra alta dell'indice */
+        public long getAlto() {
+            return alto;
+        }
+
+        /** @return cifra bassa dell'indice */
+        public long getBasso() {
+            return basso;
+        }
+
+        /**
+         * @param numeroGiocatori 2 o 4
+         * @return indice denso della mazzata
+         */
+        public BigInteger toBigInteger(int numeroGiocatori) {
+            return BigInteger.valueOf(alto).multiply(BigInteger.valueOf(radiceBasso(numeroGiocatori)))
+                .add(BigInteger.valueOf(basso));
+        }
+
+        @Override
+        public int compareTo(Chiave altra) {
+            int c = Long.compare(alto, altra.alto);
+            return c != 0 ? c : Long.compare(basso, altra.basso);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Chiave)) return false;
+            Chiave altra = (Chiave) o;
+            return alto == altra.alto && basso == altra.basso;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(alto * 0x9E3779B97F4A7C15L + basso);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%08x%016x", alto, basso);
+        }
+    }
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @return numero di valori della cifra alta
+     */
+    public static long radiceAlto(int numeroGiocatori) {
+        return verificaGiocatori(numeroGiocatori) == 2 ? 1 : RADICE_ALTO_QUATTRO_GIOCATORI;
+    }
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @return numero di valori della cifra bassa
+     */
+    public static long radiceBasso(int numeroGiocatori) {
+        return verificaGiocatori(numeroGiocatori) == 2 ? MAZZATE_DUE_GIOCATORI : RADICE_BASSO_QUATTRO_GIOCATORI;
+    }
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @return numero totale di mazzate distinte
+     */
+    public static BigInteger numeroMazzate(int numeroGiocatori) {
+        return BigInteger.valueOf(radiceAlto(numeroGiocatori)).multiply(BigInteger.valueOf(radiceBasso(numeroGiocatori)));
+    }
+
+    /**
+     * Calcola l'indice di una mazzata
+     *
+     * @param mani mani dei giocatori (2 da 20 carte o 4 da 10), che coprono il mazzo
+     * @return l'indice della mazzata
+     * @throws IllegalArgumentException se le mani non formano una mazzata valida
+     */
+    public static Chiave rango(long[] mani) {
+        int giocatori = verificaGiocatori(mani.length);
+        int carte = N / giocatori;
+        long unione = CardSet.VUOTO;
+        for (long mano : mani) {
+            if (CardSet.conta(mano) != carte || (unione & mano) != 0) {
+                throw new IllegalArgumentException("Mazzata non valida: " + CardSet.toString(mano));
+            }
+            unione |= mano;
+        }
+        if (giocatori == 2) {
+            return new Chiave(0, rangoCombinazione(mani[0], CardSet.MAZZO_COMPLETO));
+        }
+        long resto = CardSet.MAZZO_COMPLETO;
+        long r0 = rangoCombinazione(mani[0], resto);
+        resto &= ~mani[0];
+        long r1 = rangoCombinazione(mani[1], resto);
+        resto &= ~mani[1];
+        long r2 = rangoCombinazione(mani[2], resto);
+        return new Chiave(r0, r1 * RADICE_TERZA_MANO + r2);
+    }
+
+    /**
+     * Ricostruisce le mani di una mazzata dal suo indice
+     *
+     * @param chiave l'indice della mazzata
+     * @param mani array di destinazione, di lunghezza pari al numero di giocatori
+     * @throws IllegalArgumentException se l'indice è fuori intervallo
+     */
+    public static void mani(Chiave chiave, long[] mani) {
+        mani(chiave.alto, chiave.basso, mani);
+    }
+
+    /**
+     * Ricostruisce le mani di una mazzata dalle due cifre dell'indice
+     *
+     * @param alto cifra alta
+     * @param basso cifra bassa
+     * @param mani array di destinazione, di lunghezza pari al numero di giocatori
+     * @throws IllegalArgumentException se l'indice è fuori intervallo
+     */
+    public static void mani(long alto, long basso, long[] mani) {
+        int giocatori = verificaGiocatori(mani.length);
+        if (alto < 0 || alto >= radiceAlto(giocatori) || basso < 0 || basso >= radiceBasso(giocatori)) {
+            throw new IllegalArgumentException("Indice mazzata fuori intervallo: " + alto + "/" + basso);
+        }
+        if (giocatori == 2) {
+            mani[0] = combinazione(basso, N / 2, CardSet.MAZZO_COMPLETO);
+            mani[1] = CardSet.MAZZO_COMPLETO & ~mani[0];
+            return;
+        }
+        long resto = CardSet.MAZZO_COMPLETO;
+        mani[0] = combinazione(alto, 10, resto);
+        resto &= ~mani[0];
+        mani[1] = combinazione(basso / RADICE_TERZA_MANO, 10, resto);
+        resto &= ~mani[1];
+        mani[2] = combinazione(basso % RADICE_TERZA_MANO, 10, resto);
+        mani[3] = resto & ~mani[2];
+    }
+
+    /**
+     * Estrae una mazzata uniforme senza mescolare: ogni cifra dell'indice è
+     * estratta in modo indipendente nel proprio intervallo
+     *
+     * @param random generatore da usare
+     * @param mani array di destinazione, di lunghezza pari al numero di giocatori
+     */
+    public static void campiona(SplittableRandom random, long[] mani) {
+        int giocatori = mani.length;
+        long alto = giocatori == 4 ? random.nextLong(RADICE_ALTO_QUATTRO_GIOCATORI) : 0;
+        mani(alto, random.nextLong(radiceBasso(giocatori)), mani);
+    }
+
+    /**
+     * Indice colessicografico di un sottoinsieme all'interno di un universo:
+     * le carte sono numerate per posizione tra i bit dell'universo
+     *
+     * @param insieme sottoinsieme di {@code universo}
+     * @param universo carte disponibili
+     * @return indice in [0, C(|universo|, |insieme|))
+     */
+    public static long rangoCombinazione(long insieme, long universo) {
+        long rango = 0;
+        int i = 1;
+        for (long resto = insieme; resto != 0; resto &= resto - 1, i++) {
+            long bit = resto & -resto;
+            rango += BINOMIALE[Long.bitCount(universo & (bit - 1))][i];
+        }
+        return rango;
+    }
+
+    /**
+     * Sottoinsieme di {@code k} carte dell'universo con l'indice colessicografico dato
+     *
+     * @param rango indice in [0, C(|universo|, k))
+     * @param k numero di carte
+     * @param universo carte disponibili
+     * @return il sottoinsieme corrispondente
+     */
+    public static long combinazione(long rango, int k, long universo) {
+        long insieme = CardSet.VUOTO;
+        int posizione = Long.bitCount(universo);
+        for (int i = k; i > 0; i--) {
+            posizione--;
+            while (BINOMIALE[posizione][i] > rango) {
+                posizione--;
+            }
+            rango -= BINOMIALE[posizione][i];
+            insieme |= selezionaBit(universo, posizione);
+        }
+        return insieme;
+    }
+
+    /** @return il bit di {@code universo} in posizione {@code posizione} tra quelli impostati */
+    private static long selezionaBit(long universo, int posizione) {
+        for (int i = 0; i < posizione; i++) {
+            universo &= universo - 1;
+        }
+        return universo & -universo;
+    }
+
+    private static int verificaGiocatori(int numeroGiocatori) {
+        if (numeroGiocatori != 2 && numeroGiocatori != 4) {
+            throw new IllegalArgumentException("Numero giocatori non valido: " + numeroGiocatori);
+        }
+        return numeroGiocatori;
+    }
+
+    /**
+     * Enumera in ordine un intervallo di indici, scrivendo le mani in un array
+     * riusato. Le cifre sono aggiornate in modo incrementale: la mano più bassa
+     * avanza con il successore colessicografico (Gosper), le altre sono
+     * ricalcolate solo al riporto. Serve per dividere un'enumerazione esaustiva
+     * tra più worker assegnando a ciascuno un intervallo di indici.
+     */
+    public static final class Enumeratore {
+        private final int giocatori;
+        private final long[] mani;
+        private long alto;
+        private long basso;
+        private final long fineAlto;
+        private final long fineBasso;
+        private boolean primo = true;
+        // Carte disponibili per la mano che avanza con Gosper e relativa combinazione compressa
+        private long universo;
+        private long compressa;
+
+        /**
+         * Enumera gli indici da {@code inizio} incluso a {@code fine} escluso
+         *
+         * @param numeroGiocatori 2 o 4
+         * @param inizio primo indice
+         * @param fine indice successivo all'ultimo (può valere {@code new Chiave(radiceAlto, 0)})
+         */
+        public Enumeratore(int numeroGiocatori, Chiave inizio, Chiave fine) {
+            this.giocatori = verificaGiocatori(numeroGiocatori);
+            this.mani = new long[numeroGiocatori];
+            this.alto = inizio.alto;
+            this.basso = inizio.basso;
+            this.fineAlto = fine.alto;
+            this.fineBasso = fine.basso;
+        }
+
+        /**
+         * Avanza alla mazzata successiva
+         *
+         * @return true se c'è una mazzata, leggibile con {@link #getMani()}
+         */
+        public boolean prossima() {
+            if (primo) {
+                primo = false;
+            } else if (++basso == radiceBasso(giocatori)) {
+                basso = 0;
+                alto++;
+            } else {
+                avanzaUltimaMano();
+                return inIntervallo();
+            }
+            if (!inIntervallo()) {
+                return false;
+            }
+            mani(alto, basso, mani);
+            int penultima = giocatori - 2;
+            universo = mani[penultima] | mani[giocatori - 1];
+            compressa = comprimi(mani[penultima], universo);
+            return true;
+        }
+
+        private boolean inIntervallo() {
+            return alto < fineAlto || (alto == fineAlto && basso < fineBasso);
+        }
+
+        private void avanzaUltimaMano() {
+            if (giocatori == 4 && basso % RADICE_TERZA_MANO == 0) {
+                // Riporto sulla seconda mano: ricalcola le mani dalla seconda in poi
+                mani(alto, basso, mani);
+                universo = mani[2] | mani[3];
+                compressa = comprimi(mani[2], universo);
+                return;
+            }
+            // Successore colessicografico della combinazione compressa (Gosper)
+            long c = compressa & -compressa;
+            long r = compressa + c;
+            compressa = (((r ^ compressa) >>> 2) / c) | r;
+            int penultima = giocatori - 2;
+            mani[penultima] = espandi(compressa, universo);
+            mani[giocatori - 1] = universo & ~mani[penultima];
+        }
+
+        /** @return le mani della mazzata corrente; l'array è riusato a ogni passo */
+        public long[] getMani() {
+            return mani;
+        }
+
+        /** @return indice della mazzata corrente */
+        public Chiave getChiave() {
+            return new Chiave(alto, basso);
+        }
+
+        private static long comprimi(long insieme, long universo) {
+            long compressa = 0;
+            int i = 0;
+            for (long resto = universo; resto != 0; resto &= resto - 1, i++) {
+                if ((insieme & resto & -resto) != 0) {
+                    compressa |= 1L << i;
+                }
+            }
+            return compressa;
+        }
+
+        private static long espandi(long compressa, long universo) {
+            long insieme = 0;
+            for (long resto = universo; compressa != 0; resto &= resto - 1, compressa >>>= 1) {
+                if ((compressa & 1) != 0) {
+                    insieme |= resto & -resto;
+                }
+            }
+            return insieme;
+        }
+    }
+}
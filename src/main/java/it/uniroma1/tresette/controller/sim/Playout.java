@@ -0,0 +1,126 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.model.Carta;
+
+import java.util.SplittableRandom;
+
+/**
+ * Nucleo dei playout per le strategie Monte Carlo: completa una mano, o
+ * l'intera partita, da una posizione qualsiasi e restituisce i punti finali.
+ * <p>
+ * Ogni istanza possiede uno {@link StatoCompatto} di lavoro e i buffer per le
+ * nuove mazzate, quindi dopo la costruzione un playout non alloca alcun
+ * oggetto: la posizione di partenza viene copiata con
+ * {@link StatoCompatto#copiaDa(StatoCompatto)} e resta intatta. L'esito è un
+ * {@code int} che contiene i punti delle due coppie, letti con
+ * {@link #coppia0(int)} e {@link #coppia1(int)}. Le istanze non sono
+ * thread-safe: ogni worker usa la propria.
+ */
+public final class Playout {
+
+    private static final int N = Carta.NUMERO_CARTE;
+
+    private final int numeroGiocatori;
+    private final StatoCompatto lavoro;
+    private final long[] mani;
+    private final int[] mazzo = new int[N];
+    private final SplittableRandom random;
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @param random generatore usato per le mazzate delle mani successive
+     */
+    public Playout(int numeroGiocatori, SplittableRandom random) {
+        this.numeroGiocatori = numeroGiocatori;
+        this.lavoro = new StatoCompatto(numeroGiocatori);
+        this.mani = new long[numeroGiocatori];
+        this.random = random;
+    }
+
+    /**
+     * Completa la mano dalla posizione indicata
+     *
+     * @param posizione posizione di partenza, non modificata
+     * @param politica politica usata da tutti i giocatori
+     * @return punti in terzi delle due coppie a fine mano (bonus ultima presa incluso)
+     */
+    public int giocaMano(StatoCompatto posizione, PoliticaPlayout politica) {
+        lavoro.copiaDa(posizione);
+        completaMano(lavoro, politica);
+        return esito(lavoro.getTerzi(0), lavoro.getTerzi(1));
+    }
+
+    /**
+     * Completa la partita: finisce la mano corrente, poi distribuisce nuove
+     * mazzate casuali finché una coppia raggiunge il punteggio di vittoria.
+     * Come nel motore, apre ogni mano chi ha vinto l'ultima presa della precedente.
+     *
+     * @param posizione posizione di partenza, non modificata
+     * @param punteggioCoppia0 punti interi già acquisiti dalla coppia 0 nelle mani concluse
+     * @param punteggioCoppia1 punti interi già acquisiti dalla coppia 1 nelle mani concluse
+     * @param punteggioVittoria punteggio da raggiungere
+     * @param politica politica usata da tutti i giocatori
+     * @return punti interi finali delle due coppie
+     */
+    public int giocaPartita(StatoCompatto posizione, int punteggioCoppia0, int punteggioCoppia1,
+                            int punteggioVittoria, PoliticaPlayout politica) {
+        lavoro.copiaDa(posizione);
+        while (true) {
+            completaMano(lavoro, politica);
+            // Troncamento a punti interi una sola volta a fine mano
+            punteggioCoppia0 += lavoro.getTerzi(0) / 3;
+            punteggioCoppia1 += lavoro.getTerzi(1) / 3;
+            if (punteggioCoppia0 >= punteggioVittoria || punteggioCoppia1 >= punteggioVittoria) {
+                return esito(punteggioCoppia0, punteggioCoppia1);
+            }
+            distribuisci();
+            lavoro.inizializza(mani, lavoro.getPrimo(), 0, 0);
+        }
+    }
+
+    /**
+     * Gioca sullo stato indicato fino alla fine della mano
+     *
+     * @param stato stato da far avanzare
+     * @param politica politica usata da tutti i giocatori
+     */
+    public static void completaMano(StatoCompatto stato, PoliticaPlayout politica) {
+        while (!stato.isManoFinita()) {
+            stato.gioca(politica.scegli(stato, stato.mosseLegali()));
+        }
+    }
+
+    /** Mescola il mazzo riusato (Fisher-Yates) e distribuisce le mani nei buffer */
+    private void distribuisci() {
+        for (int i = 0; i < N; i++) {
+            mazzo[i] = i;
+        }
+        for (int i = N - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = mazzo[i];
+            mazzo[i] = mazzo[j];
+            mazzo[j] = tmp;
+        }
+        for (int g = 0; g < numeroGiocatori; g++) {
+            mani[g] = 0L;
+        }
+        for (int i = 0; i < N; i++) {
+            mani[i % numeroGiocatori] |= 1L << mazzo[i];
+        }
+    }
+
+    /** @return esito con i punti della coppia 0 nei 16 bit bassi e della coppia 1 in quelli alti */
+    public static int esito(int coppia0, int coppia1) {
+        return coppia0 | coppia1 << 16;
+    }
+
+    /** @return punti della coppia 0 contenuti nell'esito */
+    public static int coppia0(int esito) {
+        return esito & 0xFFFF;
+    }
+
+    /** @return punti della coppia 1 contenuti nell'esito */
+    public static int coppia1(int esito) {
+        return esito >>> 16;
+    }
+}
@@ -0,0 +1,44 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.controller.ai.BasicAIStrategy;
+import it.uniroma1.tresette.model.CardSet;
+
+import java.util.SplittableRandom;
+
+/**
+ * Politica veloce usata per completare una mano durante i playout.
+ * Le implementazioni non devono allocare: ricevono lo stato e le mosse legali
+ * già calcolate e restituiscono l'ordinale della carta da giocare.
+ */
+@FunctionalInterface
+public interface PoliticaPlayout {
+
+    /**
+     * @param stato stato corrente, da non modificare
+     * @param mosseLegali carte giocabili dal giocatore di turno, non vuoto
+     * @return ordinale della carta scelta, contenuta in {@code mosseLegali}
+     */
+    int scegli(StatoCompatto stato, long mosseLegali);
+
+    /**
+     * Politica predefinita: le euristiche di {@link BasicAIStrategy}
+     * (segue il seme superando la carta migliore con la più debole possibile,
+     * altrimenti lascia la carta che vale meno)
+     */
+    PoliticaPlayout EURISTICA = (stato, mosseLegali) ->
+        BasicAIStrategy.scegliCarta(stato.getMano(stato.getTurno()), stato.getSemeRichiesto(), stato.getTavolo());
+
+    /**
+     * @param random generatore da usare, non condiviso tra thread
+     * @return politica che sceglie una carta legale uniformemente a caso
+     */
+    static PoliticaPlayout casuale(SplittableRandom random) {
+        return (stato, mosseLegali) -> {
+            int salta = random.nextInt(CardSet.conta(mosseLegali));
+            for (int i = 0; i < salta; i++) {
+                mosseLegali &= mosseLegali - 1;
+            }
+            return Long.numberOfTrailingZeros(mosseLegali);
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.controller.DeckManager;
+import it.uniroma1.tresette.controller.GameRules;
+import it.uniroma1.tresette.controller.ScoreCalculator;
+import it.uniroma1.tresette.controller.ai.BasicAIStrategy;
+import it.uniroma1.tresette.model.Carta;
+
+import java.util.SplittableRandom;
+
+/**
+ * Simulatore a lotti: gioca molte mani in parallelo su un solo core.
+ * <p>
+ * Lo stato di tutte le partite è tenuto in array primitivi paralleli
+ * (struttura di array): mani come {@link it.uniroma1.tresette.model.CardSet},
+ * giocatore di apertura, carte della presa e punti in terzi. Poiché ogni mano
+ * dura esattamente 40 carte, tutte le partite avanzano in lockstep: per ogni
+ * posizione della presa un ciclo fa giocare una carta a ogni partita, poi un
+ * secondo ciclo risolve tutte le prese con le tabelle di {@link GameRules}.
+ * I cicli sono brevi, senza oggetti e senza salti tra partite, quindi il JIT
+ * li tiene in cache e può srotolarli.
+ * <p>
+ * Ogni giocatore segue le euristiche di {@link BasicAIStrategy}, applicate
+ * tramite {@link BasicAIStrategy#scegliCarta(long, int, long)} sulle maschere.
+ */
+public final class SimulatoreBatch {
+
+    private static final int N = Carta.NUMERO_CARTE;
+
+    private final int partite;
+    private final int numeroGiocatori;
+
+    // [partita * 4 + giocatore]
+    private final long[] mani;
+    // [partita * 4 + posizione nella presa]: ordinali delle carte giocate
+    private final int[] presa;
+    // [partita]
+    private final long[] tavolo;
+    private final int[] primo;
+    private final int[] terziCoppia0;
+    private final int[] terziCoppia1;
+
+    private final long[] buffer;
+
+    /**
+     * @param partite numero di partite del lotto
+     * @param numeroGiocatori 2 o 4
+     * @throws IllegalArgumentException se i parametri non sono validi
+     */
+    public SimulatoreBatch(int partite, int numeroGiocatori) {
+        if (partite <= 0) {
+            throw new IllegalArgumentException("Numero partite non valido: " + partite);
+        }
+        if (numeroGiocatori != 2 && numeroGiocatori != 4) {
+            throw new IllegalArgumentException("Numero giocatori non valido: " + numeroGiocatori);
+        }
+        this.partite = partite;
+        this.numeroGiocatori = numeroGiocatori;
+        this.mani = new long[partite * 4];
+        this.presa = new int[partite * 4];
+        this.tavolo = new long[partite];
+        this.primo = new int[partite];
+        this.terziCoppia0 = new int[partite];
+        this.terziCoppia1 = new int[partite];
+        this.buffer = new long[numeroGiocatori];
+    }
+
+    /**
+     * Carica una mano da giocare
+     *
+     * @param partita indice della partita nel lotto
+     * @param mani mani dei giocatori come CardSet
+     * @param primoGiocatore giocatore che apre la prima presa
+     */
+    public void carica(int partita, long[] mani, int primoGiocatore) {
+        for (int i = 0; i < numeroGiocatori; i++) {
+            this.mani[partita * 4 + i] = mani[i];
+        }
+        primo[partita] = primoGiocatore;
+        terziCoppia0[partita] = 0;
+        terziCoppia1[partita] = 0;
+    }
+
+    /**
+     * Carica la mazzata identificata dal seme, la stessa che distribuirebbe il
+     * {@link DeckManager} con {@link DeckManager#mescolaMazzo(long)}
+     *
+     * @param partita indice della partita nel lotto
+     * @param semeMazzata seme della mazzata
+     * @param primoGiocatore giocatore che apre la prima presa
+     */
+    public void carica(int partita, long semeMazzata, int primoGiocatore) {
+        DeckManager.maniDaSeme(semeMazzata, buffer);
+        carica(partita, buffer, primoGiocatore);
+    }
+
+    /**
+     * Carica in tutte le partite mazzate estratte dal generatore, con apertura del giocatore 0
+     *
+     * @param random generatore dei semi delle mazzate
+     */
+    public void caricaCasuali(SplittableRandom random) {
+        for (int p = 0; p < partite; p++) {
+            carica(p, random.nextLong(), 0);
+        }
+    }
+
+    /**
+     * Gioca fino in fondo tutte le mani caricate
+     */
+    public void giocaMani() {
+        int prese = N / numeroGiocatori;
+        for (int p = 0; p < prese; p++) {
+            for (int posizione = 0; posizione < numeroGiocatori; posizione++) {
+                giocaPosizione(posizione);
+            }
+            if (numeroGiocatori == 2) {
+                chiudiPreseDue(p == prese - 1);
+            } else {
+                chiudiPreseQuattro(p == prese - 1);
+            }
+        }
+    }
+
+    /** Fa giocare in ogni partita la carta della posizione indicata nella presa */
+    private void giocaPosizione(int posizione) {
+        for (int p = 0; p < partite; p++) {
+            int giocatore = primo[p] + posizione;
+            if (giocatore >= numeroGiocatori) {
+                giocatore -= numeroGiocatori;
+            }
+            int indiceMano = p * 4 + giocatore;
+            int indiceSeme = posizione == 0 ? -1 : Carta.indiceSeme(presa[p * 4]);
+            long carteGiocate = posizione == 0 ? 0L : tavolo[p];
+            int carta = BasicAIStrategy.scegliCarta(mani[indiceMano], indiceSeme, carteGiocate);
+            mani[indiceMano] &= ~(1L << carta);
+            presa[p * 4 + posizione] = carta;
+            tavolo[p] = carteGiocate | 1L << carta;
+        }
+    }
+
+    private void chiudiPreseDue(boolean ultima) {
+        int bonus = ultima ? ScoreCalculator.TERZI_ULTIMA_PRESA : 0;
+        for (int p = 0; p < partite; p++) {
+            int a = presa[p * 4];
+            int b = presa[p * 4 + 1];
+            int vincitore = (primo[p] + GameRules.vincitorePresa(a, b)) & 1;
+            assegna(p, vincitore, GameRules.puntiPresa(a, b) + bonus);
+        }
+    }
+
+    private void chiudiPreseQuattro(boolean ultima) {
+        int bonus = ultima ? ScoreCalculator.TERZI_ULTIMA_PRESA : 0;
+        for (int p = 0; p < partite; p++) {
+            int i = p * 4;
+            int a = presa[i];
+            int b = presa[i + 1];
+            int c = presa[i + 2];
+            int d = presa[i + 3];
+            int vincitore = (primo[p] + GameRules.vincitorePresa(a, b, c, d)) & 3;
+            assegna(p, vincitore, GameRules.puntiPresa(a, b, c, d) + bonus);
+        }
+    }
+
+    private void assegna(int partita, int vincitore, int punti) {
+        // Senza salti: la coppia dei pari prende i punti se il vincitore è pari
+        int dispari = vincitore & 1;
+        terziCoppia0[partita] += punti & (dispari - 1);
+        terziCoppia1[partita] += punti & -dispari;
+        primo[partita] = vincitore;
+    }
+
+    /** @return numero di partite del lotto */
+    public int getPartite() {
+        return partite;
+    }
+
+    /** @return numero di giocatori per partita */
+    public int getNumeroGiocatori() {
+        return numeroGiocatori;
+    }
+
+    /**
+     * @param partita indice della partita nel lotto
+     * @param coppia 0 per i giocatori pari, 1 per i dispari
+     * @return punti presi dalla coppia nella mano, in terzi di punto
+     */
+    public int getTerzi(int partita, int coppia) {
+        return coppia == 0 ? terziCoppia0[partita] : terziCoppia1[partita];
+    }
+
+    /**
+     * @param partita indice della partita nel lotto
+     * @param coppia 0 per i giocatori pari, 1 per i dispari
+     * @return punti interi della coppia nella mano
+     */
+    public int getPunti(int partita, int coppia) {
+        return getTerzi(partita, coppia) / 3;
+    }
+
+    /**
+     * @param partita indice della partita nel lotto
+     * @return giocatore che ha vinto l'ultima presa giocata
+     */
+    public int getUltimoVincitore(int partita) {
+        return primo[partita];
+    }
+}
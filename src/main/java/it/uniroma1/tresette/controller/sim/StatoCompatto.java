@@ -0,0 +1,342 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.controller.GameEngine;
+import it.uniroma1.tresette.controller.GameRules;
+import it.uniroma1.tresette.controller.ScoreCalculator;
+import it.uniroma1.tresette.model.CardSet;
+import it.uniroma1.tresette.model.Carta;
+import it.uniroma1.tresette.model.Giocatore;
+
+import java.util.List;
+
+/**
+ * Stato compatto di una mano di Tresette pensato per la ricerca dell'AI.
+ * Mani come {@link CardSet}, carte sul tavolo, giocatore di apertura, punti
+ * in terzi per coppia e numero di prese sono campi primitivi; le carte giocate
+ * sono registrate in una pila a dimensione fissa così che {@link #gioca(int)}
+ * e {@link #annulla()} costino O(1) senza allocazioni.
+ * <p>
+ * Le carte sono identificate dal loro ordinale ({@link Carta#getOrdinale()}).
+ * Come nel {@link GameEngine}, i giocatori pari appartengono alla coppia 0 e
+ * i dispari alla coppia 1. L'istanza è mutabile e non thread-safe: ogni
+ * thread di ricerca usa la propria copia ({@link #copiaDa(StatoCompatto)}).
+ * <p>
+ * La chiave di {@link Zobrist} della posizione è mantenuta in modo
+ * incrementale da {@link #gioca(int)} e {@link #annulla()}.
+ */
+public final class StatoCompatto {
+
+    private static final int N = Carta.NUMERO_CARTE;
+
+    private final int numeroGiocatori;
+    private final long[] mani = new long[4];
+    private final int[] terzi = new int[2];
+    private int primo;
+    private int turno;
+    private int carteSulTavolo;
+    private int prese;
+    private long chiave;
+
+    // Pila delle mosse: la carta i-esima della presa p è in carteGiocate[p * numeroGiocatori + i]
+    private final byte[] carteGiocate = new byte[N];
+    private int mosse;
+    // Per ogni presa chiusa: giocatore di apertura e punti assegnati (bonus incluso)
+    private final byte[] primoPresa = new byte[N / 2];
+    private final byte[] puntiPresa = new byte[N / 2];
+
+    /**
+     * @param numeroGiocatori 2 o 4
+     * @throws IllegalArgumentException se il numero di giocatori non è valido
+     */
+    public StatoCompatto(int numeroGiocatori) {
+        if (numeroGiocatori != 2 && numeroGiocatori != 4) {
+            throw new IllegalArgumentException("Numero giocatori non valido: " + numeroGiocatori);
+        }
+        this.numeroGiocatori = numeroGiocatori;
+    }
+
+    /**
+     * Crea lo stato compatto corrispondente alla situazione attuale del motore.
+     * Le carte della presa in corso non ancora valutata vengono rigiocate, così
+     * possono essere annullate come le altre.
+     *
+     * @param engine il motore di gioco
+     * @return un nuovo stato compatto
+     */
+    public static StatoCompatto da(GameEngine engine) {
+        Giocatore[] giocatori = engine.getGiocatori();
+        int primo = engine.getGameState().getPrimoGiocatoreMano();
+        // Dopo la valutazione le carte restano sul tavolo ma la presa è già chiusa
+        List<Carta> tavolo = engine.getDeckManager().getCarteGiocate()
+            .subList(0, engine.getGameState().getCarteGiocateInMano());
+
+        long[] mani = new long[giocatori.length];
+        for (int i = 0; i < giocatori.length; i++) {
+            mani[i] = giocatori[i].getManoBits();
+        }
+        for (int i = 0; i < tavolo.size(); i++) {
+            mani[(primo + i) % giocatori.length] |= CardSet.bit(tavolo.get(i));
+        }
+
+        StatoCompatto stato = new StatoCompatto(giocatori.length);
+        stato.inizializza(mani, primo, engine.getGameState().getTerziManoCoppia1(),
+                          engine.getGameState().getTerziManoCoppia2());
+        for (Carta carta : tavolo) {
+            stato.gioca(carta.getOrdinale());
+        }
+        return stato;
+    }
+
+    /**
+     * Inizializza lo stato all'inizio di una presa
+     *
+     * @param mani mani dei giocatori come {@link CardSet}, una per giocatore
+     * @param primo giocatore che apre la presa
+     * @param terziCoppia0 punti già presi nella mano dalla coppia 0, in terzi
+     * @param terziCoppia1 punti già presi nella mano dalla coppia 1, in terzi
+     */
+    public void inizializza(long[] mani, int primo, int terziCoppia0, int terziCoppia1) {
+        for (int i = 0; i < 4; i++) {
+            this.mani[i] = i < numeroGiocatori ? mani[i] : CardSet.VUOTO;
+        }
+        terzi[0] = terziCoppia0;
+        terzi[1] = terziCoppia1;
+        this.primo = primo;
+        this.turno = primo;
+        carteSulTavolo = 0;
+        prese = 0;
+        mosse = 0;
+        chiave = calcolaChiave();
+    }
+
+    /**
+     * Copia lo stato di un'altra istanza con lo stesso numero di giocatori, senza allocare
+     *
+     * @param altro lo stato da copiare
+     */
+    public void copiaDa(StatoCompatto altro) {
+        if (altro.numeroGiocatori != numeroGiocatori) {
+            throw new IllegalArgumentException("Numero giocatori diverso");
+        }
+        System.arraycopy(altro.mani, 0, mani, 0, 4);
+        terzi[0] = altro.terzi[0];
+        terzi[1] = altro.terzi[1];
+        primo = altro.primo;
+        turno = altro.turno;
+        carteSulTavolo = altro.carteSulTavolo;
+        prese = altro.prese;
+        mosse = altro.mosse;
+        chiave = altro.chiave;
+        System.arraycopy(altro.carteGiocate, 0, carteGiocate, 0, mosse);
+        System.arraycopy(altro.primoPresa, 0, primoPresa, 0, prese);
+        System.arraycopy(altro.puntiPresa, 0, puntiPresa, 0, prese);
+    }
+
+    /**
+     * Sostituisce la mano di un giocatore lasciando intatti tavolo, punti e
+     * mosse registrate, ad esempio per provare una diversa distribuzione delle
+     * carte nascoste
+     *
+     * @param giocatore indice del giocatore
+     * @param mano nuova mano come {@link CardSet}
+     */
+    public void sostituisciMano(int giocatore, long mano) {
+        chiave ^= Zobrist.mano(giocatore, mani[giocatore]) ^ Zobrist.mano(giocatore, mano);
+        mani[giocatore] = mano;
+    }
+
+    /**
+     * Gioca una carta per il giocatore di turno. Se la presa si completa viene
+     * risolta subito: punti alla coppia vincitrice (con il bonus se è l'ultima
+     * presa della mano) e turno al vincitore. Non verifica che la carta sia
+     * legale: chi chiama sceglie tra {@link #mosseLegali()}.
+     *
+     * @param carta ordinale della carta da giocare
+     */
+    public void gioca(int carta) {
+        mani[turno] &= ~(1L << carta);
+        carteGiocate[mosse++] = (byte) carta;
+        chiave ^= Zobrist.carta(turno, carta) ^ Zobrist.turno(turno);
+        if (++carteSulTavolo < numeroGiocatori) {
+            chiave ^= Zobrist.tavolo(carteSulTavolo - 1, carta);
+            turno = turno + 1 == numeroGiocatori ? 0 : turno + 1;
+            chiave ^= Zobrist.turno(turno);
+            return;
+        }
+
+        int base = mosse - numeroGiocatori;
+        // La presa si chiude: le carte lasciano il tavolo (l'ultima non ci è mai entrata)
+        for (int i = 0; i < numeroGiocatori - 1; i++) {
+            chiave ^= Zobrist.tavolo(i, carteGiocate[base + i]);
+        }
+        int posizione;
+        int punti;
+        if (numeroGiocatori == 2) {
+            posizione = GameRules.vincitorePresa(carteGiocate[base], carteGiocate[base + 1]);
+            punti = GameRules.puntiPresa(carteGiocate[base], carteGiocate[base + 1]);
+        } else {
+            posizione = GameRules.vincitorePresa(carteGiocate[base], carteGiocate[base + 1],
+                                                 carteGiocate[base + 2], carteGiocate[base + 3]);
+            punti = GameRules.puntiPresa(carteGiocate[base], carteGiocate[base + 1],
+                                         carteGiocate[base + 2], carteGiocate[base + 3]);
+        }
+        if (isManoFinita()) {
+            punti += ScoreCalculator.TERZI_ULTIMA_PRESA;
+        }
+        int vincitore = (primo + posizione) % numeroGiocatori;
+        terzi[vincitore & 1] += punti;
+        primoPresa[prese] = (byte) primo;
+        puntiPresa[prese] = (byte) punti;
+        prese++;
+        chiave ^= Zobrist.primo(primo) ^ Zobrist.primo(vincitore) ^ Zobrist.turno(vincitore);
+        primo = vincitore;
+        turno = vincitore;
+        carteSulTavolo = 0;
+    }
+
+    /**
+     * Annulla l'ultima carta giocata, riaprendo la presa se quella carta l'aveva chiusa
+     *
+     * @throws IllegalStateException se non ci sono mosse da annullare
+     */
+    public void annulla() {
+        if (mosse == 0) {
+            throw new IllegalStateException("Nessuna mossa da annullare");
+        }
+        int carta = carteGiocate[--mosse];
+        chiave ^= Zobrist.turno(turno);
+        if (carteSulTavolo == 0) {
+            // La carta aveva chiuso una presa: il vincitore è l'attuale primo
+            prese--;
+            terzi[primo & 1] -= puntiPresa[prese];
+            chiave ^= Zobrist.primo(primo) ^ Zobrist.primo(primoPresa[prese]);
+            primo = primoPresa[prese];
+            carteSulTavolo = numeroGiocatori - 1;
+            // Le altre carte della presa tornano sul tavolo
+            for (int i = 0; i < carteSulTavolo; i++) {
+                chiave ^= Zobrist.tavolo(i, carteGiocate[mosse - carteSulTavolo + i]);
+            }
+        } else {
+            carteSulTavolo--;
+            chiave ^= Zobrist.tavolo(carteSulTavolo, carta);
+        }
+        int giocatore = (primo + carteSulTavolo) % numeroGiocatori;
+        mani[giocatore] |= 1L << carta;
+        turno = giocatore;
+        chiave ^= Zobrist.carta(giocatore, carta) ^ Zobrist.turno(giocatore);
+    }
+
+    /**
+     * Ricalcola da zero la chiave di {@link Zobrist} della posizione,
+     * per inizializzarla e per i controlli di coerenza
+     *
+     * @return la chiave della posizione corrente
+     */
+    public long calcolaChiave() {
+        long nuova = Zobrist.primo(primo) ^ Zobrist.turno(turno);
+        for (int i = 0; i < numeroGiocatori; i++) {
+            nuova ^= Zobrist.mano(i, mani[i]);
+        }
+        for (int i = 0; i < carteSulTavolo; i++) {
+            nuova ^= Zobrist.tavolo(i, getCartaSulTavolo(i));
+        }
+        return nuova;
+    }
+
+    /**
+     * @return carte che il giocatore di turno può giocare, come {@link CardSet}:
+     *         quelle del seme richiesto se ne ha, altrimenti tutta la mano
+     */
+    public long mosseLegali() {
+        return GameRules.mosseLegali(mani[turno], getSemeRichiesto());
+    }
+
+    /** @return true se tutte le carte della mano sono state giocate */
+    public boolean isManoFinita() {
+        return (mani[0] | mani[1] | mani[2] | mani[3]) == CardSet.VUOTO;
+    }
+
+    /** @return numero di giocatori (2 o 4) */
+    public int getNumeroGiocatori() {
+        return numeroGiocatori;
+    }
+
+    /** @return mano del giocatore indicato come {@link CardSet} */
+    public long getMano(int giocatore) {
+        return mani[giocatore];
+    }
+
+    /** @return chiave di {@link Zobrist} della posizione corrente */
+    public long getChiave() {
+        return chiave;
+    }
+
+    /** @return giocatore a cui tocca giocare */
+    public int getTurno() {
+        return turno;
+    }
+
+    /** @return giocatore che ha aperto la presa in corso */
+    public int getPrimo() {
+        return primo;
+    }
+
+    /** @return numero di carte già giocate nella presa in corso */
+    public int getCarteSulTavolo() {
+        return carteSulTavolo;
+    }
+
+    /**
+     * @param posizione posizione nell'ordine di gioco della presa in corso
+     * @return ordinale della carta giocata in quella posizione
+     */
+    public int getCartaSulTavolo(int posizione) {
+        return carteGiocate[mosse - carteSulTavolo + posizione];
+    }
+
+    /** @return carte della presa in corso come {@link CardSet} */
+    public long getTavolo() {
+        long tavolo = CardSet.VUOTO;
+        for (int i = mosse - carteSulTavolo; i < mosse; i++) {
+            tavolo |= 1L << carteGiocate[i];
+        }
+        return tavolo;
+    }
+
+    /** @return indice del seme richiesto nella presa in corso, -1 in apertura */
+    public int getSemeRichiesto() {
+        return carteSulTavolo == 0 ? -1 : Carta.indiceSeme(carteGiocate[mosse - carteSulTavolo]);
+    }
+
+    /**
+     * @param coppia 0 per la coppia dei giocatori pari, 1 per quella dei dispari
+     * @return punti presi nella mano dalla coppia, in terzi di punto
+     */
+    public int getTerzi(int coppia) {
+        return terzi[coppia];
+    }
+
+    /** @return numero di prese chiuse da quando lo stato è stato inizializzato */
+    public int getPrese() {
+        return prese;
+    }
+
+    /** @return numero di carte giocate registrate e annullabili */
+    public int getMosse() {
+        return mosse;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("StatoCompatto[turno=").append(turno)
+            .append(", terzi=").append(terzi[0]).append('/').append(terzi[1])
+            .append(", tavolo=");
+        for (int i = 0; i < carteSulTavolo; i++) {
+            sb.append(i == 0 ? "" : " ").append(Carta.perOrdinale(getCartaSulTavolo(i)));
+        }
+        for (int i = 0; i < numeroGiocatori; i++) {
+            sb.append(", mano").append(i).append('=').append(CardSet.toString(mani[i]));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,86 @@
+package it.uniroma1.tresette.controller.sim;
+
+import it.uniroma1.tresette.model.Carta;
+
+import java.util.SplittableRandom;
+
+/**
+ * Chiavi di Zobrist per identificare le posizioni di {@link StatoCompatto}.
+ * <p>
+ * La chiave di una posizione è lo XOR di una chiave casuale a 64 bit per ogni
+ * fatto che la descrive: in quale mano si trova ogni carta, quale carta occupa
+ * ogni posto della presa in corso, chi l'ha aperta e chi deve giocare. Le
+ * carte già prese non hanno chiave: sono implicite, perché non stanno né in
+ * mano né sul tavolo. Anche i punti già presi sono esclusi, quindi posizioni
+ * raggiunte con ordini di gioco diversi coincidono e una tabella di
+ * trasposizione può memorizzarne il valore dei punti ancora da prendere.
+ * <p>
+ * Le chiavi sono generate da un seme fisso, così restano uguali tra
+ * un'esecuzione e l'altra e possono essere salvate insieme alle posizioni.
+ */
+public final class Zobrist {
+
+    private static final int N = Carta.NUMERO_CARTE;
+    private static final long SEME = 0x7E5E77EL;
+
+    // [giocatore * 40 + carta]
+    private static final long[] MANO = new long[4 * N];
+    // [posizione nella presa * 40 + carta]
+    private static final long[] TAVOLO = new long[4 * N];
+    private static final long[] PRIMO = new long[4];
+    private static final long[] TURNO = new long[4];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEME);
+        for (int i = 0; i < 4 * N; i++) {
+            MANO[i] = random.nextLong();
+            TAVOLO[i] = random.nextLong();
+        }
+        for (int i = 0; i < 4; i++) {
+            PRIMO[i] = random.nextLong();
+            TURNO[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Chiave di una sola carta nella mano del giocatore; per una mano intera
+     * c'è {@link #mano(int, long)}
+     *
+     * @return chiave della carta nella mano del giocatore
+     */
+    public static long carta(int giocatore, int carta) {
+        return MANO[giocatore * N + carta];
+    }
+
+    /** @return chiave della carta nella posizione indicata della presa in corso */
+    public static long tavolo(int posizione, int carta) {
+        return TAVOLO[posizione * N + carta];
+    }
+
+    /** @return chiave del giocatore che ha aperto la presa in corso */
+    public static long primo(int giocatore) {
+        return PRIMO[giocatore];
+    }
+
+    /** @return chiave del giocatore di turno */
+    public static long turno(int giocatore) {
+        return TURNO[giocatore];
+    }
+
+    /**
+     * Chiave di tutte le carte di una mano
+     *
+     * @param giocatore indice del giocatore
+     * @param mano carte come {@link it.uniroma1.tresette.model.CardSet}
+     * @return XOR delle chiavi delle carte
+     */
+    public static long mano(int giocatore, long mano) {
+        long chiave = 0L;
+        for (long resto = mano; resto != 0; resto &= resto - 1) {
+            chiave ^= MANO[giocatore * N + Long.numberOfTrailingZeros(resto)];
+        }
+        return chiave;
+    }
+}
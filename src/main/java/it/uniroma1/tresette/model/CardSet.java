@@ -0,0 +1,265 @@
+package it.uniroma1.tresette.model;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongSupplier;
+
+/**
+ * Insieme di carte rappresentato come maschera di bit in un {@code long}.
+ * Ogni carta occupa il bit del proprio {@link Carta#getOrdinale() ordinale}:
+ * i 10 bit di ciascun {@link Seme} sono contigui, quindi le 40 carte del mazzo
+ * stanno nei 40 bit meno significativi.
+ * Tutte le operazioni sono statiche e lavorano sul valore, senza allocazioni.
+ */
+public final class CardSet {
+
+    /** Insieme vuoto */
+    public static final long VUOTO = 0L;
+    /** Insieme contenente tutte le 40 carte */
+    public static final long MAZZO_COMPLETO = (1L << Carta.NUMERO_CARTE) - 1;
+
+    private static final int CARTE_PER_SEME = Carta.CARTE_PER_SEME;
+    private static final long MASCHERA_SEME = (1L << CARTE_PER_SEME) - 1;
+    // Un bit per seme nella posizione del valore 1: spostata di (valore - 1) dà le 4 carte del valore
+    private static final long MASCHERA_ASSI = 1L | 1L << 10 | 1L << 20 | 1L << 30;
+    // Carte che valgono 3 terzi (assi) e 1 terzo (2, 3 e figure)
+    private static final long MASCHERA_TRE_TERZI;
+    private static final long MASCHERA_UN_TERZO;
+
+    static {
+        long treTerzi = VUOTO;
+        long unTerzo = VUOTO;
+        for (int i = 0; i < Carta.NUMERO_CARTE; i++) {
+            if (Carta.puntiInTerzi(i) == 3) {
+                treTerzi |= 1L << i;
+            } else if (Carta.puntiInTerzi(i) == 1) {
+                unTerzo |= 1L << i;
+            }
+        }
+        MASCHERA_TRE_TERZI = treTerzi;
+        MASCHERA_UN_TERZO = unTerzo;
+    }
+
+    private CardSet() {}
+
+    /**
+     * @param carta la carta
+     * @return indice del bit della carta (0-39)
+     */
+    public static int indice(Carta carta) {
+        return carta.getOrdinale();
+    }
+
+    /**
+     * @param indice indice del bit (0-39)
+     * @return la carta corrispondente
+     */
+    public static Carta carta(int indice) {
+        return Carta.perOrdinale(indice);
+    }
+
+    /**
+     * @param carta la carta
+     * @return insieme contenente solo la carta indicata
+     */
+    public static long bit(Carta carta) {
+        return 1L << indice(carta);
+    }
+
+    /** @return l'insieme con la carta aggiunta */
+    public static long aggiungi(long insieme, Carta carta) {
+        return insieme | bit(carta);
+    }
+
+    /** @return l'insieme senza la carta indicata */
+    public static long rimuovi(long insieme, Carta carta) {
+        return insieme & ~bit(carta);
+    }
+
+    /** @return true se la carta appartiene all'insieme */
+    public static boolean contiene(long insieme, Carta carta) {
+        return (insieme & bit(carta)) != 0;
+    }
+
+    /** @return numero di carte nell'insieme */
+    public static int conta(long insieme) {
+        return Long.bitCount(insieme);
+    }
+
+    /**
+     * Somma i punti delle carte dell'insieme con due conteggi di bit
+     * @return punti dell'insieme in terzi di punto
+     */
+    public static int puntiInTerzi(long insieme) {
+        return 3 * Long.bitCount(insieme & MASCHERA_TRE_TERZI) + Long.bitCount(insieme & MASCHERA_UN_TERZO);
+    }
+
+    /**
+     * @param seme il seme
+     * @return maschera con le 10 carte del seme
+     */
+    public static long maschera(Seme seme) {
+        return maschera(seme.ordinal());
+    }
+
+    /**
+     * @param indiceSeme indice del seme (ordinale di {@link Seme})
+     * @return maschera con le 10 carte del seme
+     */
+    public static long maschera(int indiceSeme) {
+        return MASCHERA_SEME << (indiceSeme * CARTE_PER_SEME);
+    }
+
+    /**
+     * @param valore valore delle carte (1-10)
+     * @return maschera con le 4 carte del valore indicato, una per seme
+     */
+    public static long mascheraValore(int valore) {
+        return MASCHERA_ASSI << (valore - 1);
+    }
+
+    /** @return le sole carte dell'insieme appartenenti al seme indicato */
+    public static long delSeme(long insieme, Seme seme) {
+        return insieme & maschera(seme);
+    }
+
+    /** @return true se l'insieme contiene almeno una carta del seme indicato */
+    public static boolean haSeme(long insieme, Seme seme) {
+        return (insieme & maschera(seme)) != 0;
+    }
+
+    /**
+     * Restituisce la carta in una data posizione, con le carte ordinate per indice
+     * (seme, poi valore)
+     *
+     * @param insieme l'insieme di carte
+     * @param posizione posizione della carta (0 = indice più basso)
+     * @return la carta nella posizione indicata
+     * @throws IndexOutOfBoundsException se la posizione non è valida
+     */
+    public static Carta get(long insieme, int posizione) {
+        if (posizione < 0 || posizione >= conta(insieme)) {
+            throw new IndexOutOfBoundsException("Posizione " + posizione + " su " + conta(insieme) + " carte");
+        }
+        for (int i = 0; i < posizione; i++) {
+            insieme &= insieme - 1;
+        }
+        return Carta.perOrdinale(Long.numberOfTrailingZeros(insieme));
+    }
+
+    /**
+     * @return posizione della carta nell'insieme ordinato, -1 se assente
+     */
+    public static int posizione(long insieme, Carta carta) {
+        long bit = bit(carta);
+        if ((insieme & bit) == 0) {
+            return -1;
+        }
+        return Long.bitCount(insieme & (bit - 1));
+    }
+
+    /**
+     * @param carte le carte da convertire
+     * @return l'insieme contenente tutte le carte indicate
+     */
+    public static long daCarte(Collection<Carta> carte) {
+        long insieme = VUOTO;
+        for (Carta carta : carte) {
+            insieme |= bit(carta);
+        }
+        return insieme;
+    }
+
+    /**
+     * Crea una lista di sola lettura che riflette in ogni momento l'insieme
+     * restituito dalla sorgente. La lista non copia le carte: dimensione,
+     * accesso e ricerca lavorano direttamente sui bit.
+     *
+     * @param sorgente fornisce il valore corrente dell'insieme
+     * @return vista ordinata (seme, poi valore) delle carte dell'insieme
+     */
+    public static List<Carta> vista(LongSupplier sorgente) {
+        return new Vista(sorgente);
+    }
+
+    /**
+     * @return rappresentazione testuale delle carte dell'insieme
+     */
+    public static String toString(long insieme) {
+        StringBuilder sb = new StringBuilder("[");
+        for (long resto = insieme; resto != 0; resto &= resto - 1) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(Carta.perOrdinale(Long.numberOfTrailingZeros(resto)));
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Lista di sola lettura sopra un insieme di carte
+     */
+    private static final class Vista extends AbstractList<Carta> {
+        private final LongSupplier sorgente;
+
+        Vista(LongSupplier sorgente) {
+            this.sorgente = sorgente;
+        }
+
+        @Override
+        public Carta get(int index) {
+            return CardSet.get(sorgente.getAsLong(), index);
+        }
+
+        @Override
+        public int size() {
+            return conta(sorgente.getAsLong());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return sorgente.getAsLong() == VUOTO;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Carta && contiene(sorgente.getAsLong(), (Carta) o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof Carta ? posizione(sorgente.getAsLong(), (Carta) o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
+
+        @Override
+        public Iterator<Carta> iterator() {
+            final long insieme = sorgente.getAsLong();
+            return new Iterator<Carta>() {
+                private long resto = insieme;
+
+                @Override
+                public boolean hasNext() {
+                    return resto != 0;
+                }
+
+                @Override
+                public Carta next() {
+                    if (resto == 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Carta carta = Carta.perOrdinale(Long.numberOfTrailingZeros(resto));
+                    resto &= resto - 1;
+                    return carta;
+                }
+            };
+        }
+    }
+}
@@ -1,76 +1,140 @@
 package it.uniroma1.tresette.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Rappresenta una carta del gioco del Tresette.
+ * Le 40 carte sono istanze canoniche immutabili create una sola volta:
+ * si ottengono con {@link #di(Seme, int)} o {@link #perOrdinale(int)} e
+ * possono essere confrontate per identità.
+ * Gli attributi derivati (forza, punti, nome, risorsa) sono precalcolati in
+ * tabelle statiche indicizzate per ordinale, quindi i getter sono semplici letture.
  */
-public class Carta {
+public final class Carta {
     // Nuove dimensioni per le carte (usate dalla view/loader)
     /** Larghezza standard della carta in pixel */
     public static final int LARGHEZZA_CARTA = 105;
     /** Altezza standard della carta in pixel */
     public static final int ALTEZZA_CARTA = 142;
 
+    /** Numero di carte del mazzo */
+    public static final int NUMERO_CARTE = 40;
+    /** Numero di carte per seme */
+    public static final int CARTE_PER_SEME = 10;
+
+    // Attributi per valore (indice 1-10): 3 > 2 > A > R > C > F > 7 > 6 > 5 > 4
+    private static final int[] FORZA_PER_VALORE = {0, 8, 9, 10, 1, 2, 3, 4, 5, 6, 7};
+    private static final int[] TERZI_PER_VALORE = {0, 3, 1, 1, 0, 0, 0, 0, 1, 1, 1};
+    private static final int[] PUNTI_PER_VALORE = {0, 100, 33, 33, 0, 0, 0, 0, 33, 33, 33};
+    private static final String[] NOME_PER_VALORE = {"", "A", "2", "3", "4", "5", "6", "7", "F", "C", "R"};
+
+    // Attributi per ordinale (0-39)
+    private static final int[] FORZA = new int[NUMERO_CARTE];
+    private static final int[] PUNTI_TERZI = new int[NUMERO_CARTE];
+    private static final int[] PUNTI = new int[NUMERO_CARTE];
+    private static final int[] INDICE_SEME = new int[NUMERO_CARTE];
+    private static final String[] NOME = new String[NUMERO_CARTE];
+    private static final String[] RISORSA = new String[NUMERO_CARTE];
+
+    private static final Carta[] CARTE = new Carta[NUMERO_CARTE];
+    private static final List<Carta> MAZZO;
+
+    static {
+        for (Seme seme : Seme.values()) {
+            for (int valore = 1; valore <= CARTE_PER_SEME; valore++) {
+                int i = seme.ordinal() * CARTE_PER_SEME + valore - 1;
+                FORZA[i] = FORZA_PER_VALORE[valore];
+                PUNTI_TERZI[i] = TERZI_PER_VALORE[valore];
+                PUNTI[i] = PUNTI_PER_VALORE[valore];
+                INDICE_SEME[i] = seme.ordinal();
+                NOME[i] = NOME_PER_VALORE[valore];
+                RISORSA[i] = seme.name().toLowerCase() + "_" + valore + ".png";
+                CARTE[i] = new Carta(valore, seme, i);
+            }
+        }
+        MAZZO = Collections.unmodifiableList(Arrays.asList(CARTE.clone()));
+    }
+
     private final int valore; // 1-10
     private final Seme seme;
-    private final String nome;
-    private final int punti;
-    // nome della risorsa immagine (es. "spade_1.png")
-    private final String risorsaNome;
+    // posizione nel mazzo canonico: seme * 10 + valore - 1
+    private final int ordinale;
 
     /**
-     * Costruttore per creare una carta con seme e valore specificati
-     * 
+     * Costruttore usato solo per creare il mazzo canonico
+     *
      * @param valore valore della carta (1-10)
      * @param seme seme della carta
+     * @param ordinale posizione nel mazzo canonico
      */
-    public Carta(int valore, Seme seme) {
+    private Carta(int valore, Seme seme, int ordinale) {
         this.valore = valore;
         this.seme = seme;
+        this.ordinale = ordinale;
+    }
 
-        switch (valore) {
-            case 1:
-                nome = "A";
-                break;
-            case 2:
-                nome = "2";
-                break;
-            case 3:
-                nome = "3";
-                break;
-            case 4:
-                nome = "4";
-                break;
-            case 5:
-                nome = "5";
-                break;
-            case 6:
-                nome = "6";
-                break;
-            case 7:
-                nome = "7";
-                break;
-            case 8:
-                nome = "F";
-                break;
-            case 9:
-                nome = "C";
-                break;
-            case 10:
-                nome = "R";
-                break;
-            default:
-                nome = String.valueOf(valore);
+    /**
+     * Restituisce l'istanza canonica della carta con seme e valore specificati
+     *
+     * @param seme seme della carta
+     * @param valore valore della carta (1-10)
+     * @return la carta canonica
+     * @throws IllegalArgumentException se il valore non è compreso tra 1 e 10
+     */
+    public static Carta di(Seme seme, int valore) {
+        if (valore < 1 || valore > CARTE_PER_SEME) {
+            throw new IllegalArgumentException("Valore carta non valido: " + valore);
         }
+        return CARTE[seme.ordinal() * CARTE_PER_SEME + valore - 1];
+    }
 
-        if (valore == 1) {
-            punti = 100;
-        } else if (valore == 2 || valore == 3 || valore == 8 || valore == 9 || valore == 10) {
-            punti = 33;
-        } else {
-            punti = 0;
-        }
+    /**
+     * Restituisce la carta canonica in una posizione del mazzo ordinato
+     *
+     * @param ordinale posizione della carta (0-39)
+     * @return la carta canonica
+     */
+    public static Carta perOrdinale(int ordinale) {
+        return CARTE[ordinale];
+    }
 
-        this.risorsaNome = String.format("%s_%d.png", seme.name().toLowerCase(), valore);
+    /**
+     * Restituisce le 40 carte canoniche ordinate per seme e valore
+     * @return lista immutabile del mazzo completo
+     */
+    public static List<Carta> mazzoCompleto() {
+        return MAZZO;
+    }
+
+    /**
+     * @param ordinale posizione della carta (0-39)
+     * @return forza per la presa della carta con l'ordinale indicato
+     */
+    public static int forza(int ordinale) {
+        return FORZA[ordinale];
+    }
+
+    /**
+     * @param ordinale posizione della carta (0-39)
+     * @return punti in terzi della carta con l'ordinale indicato
+     */
+    public static int puntiInTerzi(int ordinale) {
+        return PUNTI_TERZI[ordinale];
+    }
+
+    /**
+     * @param ordinale posizione della carta (0-39)
+     * @return indice del seme della carta con l'ordinale indicato
+     */
+    public static int indiceSeme(int ordinale) {
+        return INDICE_SEME[ordinale];
+    }
+
+    /** @return posizione della carta nel mazzo canonico (0-39) */
+    public int getOrdinale() {
+        return ordinale;
     }
 
     /** @return valore numerico della carta (1-10) */
@@ -83,14 +147,24 @@ public class Carta {
         return seme;
     }
 
+    /** @return indice del seme della carta (ordinale di {@link Seme}) */
+    public int getIndiceSeme() {
+        return INDICE_SEME[ordinale];
+    }
+
     /** @return nome simbolico della carta (A, 2-7, F, C, R) */
     public String getNome() {
-        return nome;
+        return NOME[ordinale];
     }
 
     /** @return punti assegnati alla carta per il calcolo del punteggio */
     public int getPunti() {
-        return punti;
+        return PUNTI[ordinale];
+    }
+
+    /** @return punti della carta in terzi di punto (asso = 3, figure/2/3 = 1) */
+    public int getPuntiInTerzi() {
+        return PUNTI_TERZI[ordinale];
     }
 
     /**
@@ -98,7 +172,7 @@ public class Carta {
      * @return nome file della risorsa (es. "spade_1.png")
      */
     public String getRisorsaNome() {
-        return risorsaNome;
+        return RISORSA[ordinale];
     }
 
     /**
@@ -106,34 +180,11 @@ public class Carta {
      * @return valore numerico per il confronto tra carte
      */
     public int getForzaPerPresa() {
-        switch (valore) {
-            case 3:
-                return 10;
-            case 2:
-                return 9;
-            case 1:
-                return 8;
-            case 10:
-                return 7;
-            case 9:
-                return 6;
-            case 8:
-                return 5;
-            case 7:
-                return 4;
-            case 6:
-                return 3;
-            case 5:
-                return 2;
-            case 4:
-                return 1;
-            default:
-                return 0;
-        }
+        return FORZA[ordinale];
     }
 
     @Override
     public String toString() {
-        return nome + seme.getSimbolo();
+        return NOME[ordinale] + seme.getSimbolo();
     }
 }
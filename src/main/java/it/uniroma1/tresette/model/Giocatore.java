@@ -1,16 +1,19 @@
 package it.uniroma1.tresette.model;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Rappresenta un giocatore nel gioco di Tresette.
  * Mantiene informazioni su nome, carte in mano, carte prese e tipo (umano/AI).
+ * Mano e carte prese sono memorizzate come {@link CardSet}; le liste restituite
+ * sono viste di sola lettura ordinate per seme e valore.
  */
 public class Giocatore {
     private final String nome;
-    private final List<Carta> mano;
-    private final List<Carta> cartePrese;
+    private long mano;
+    private long cartePrese;
+    private final List<Carta> vistaMano;
+    private final List<Carta> vistaCartePrese;
     private final boolean isUmano;
 
     /**
@@ -21,8 +24,8 @@ public class Giocatore {
     public Giocatore(String nome, boolean isUmano) {
         this.nome = nome;
         this.isUmano = isUmano;
-        this.mano = new ArrayList<>();
-        this.cartePrese = new ArrayList<>();
+        this.vistaMano = CardSet.vista(() -> mano);
+        this.vistaCartePrese = CardSet.vista(() -> cartePrese);
     }
 
     /**
@@ -30,7 +33,7 @@ public class Giocatore {
      * @param carta la carta da aggiungere
      */
     public void aggiungiCarta(Carta carta) {
-        mano.add(carta);
+        mano = CardSet.aggiungi(mano, carta);
     }
 
     /**
@@ -38,30 +41,62 @@ public class Giocatore {
      * @param carta la carta da rimuovere
      */
     public void rimuoviCarta(Carta carta) {
-        mano.remove(carta);
+        mano = CardSet.rimuovi(mano, carta);
+    }
+
+    /**
+     * Aggiunge una carta alle carte prese dal giocatore
+     * @param carta la carta vinta con una presa
+     */
+    public void aggiungiPresa(Carta carta) {
+        cartePrese = CardSet.aggiungi(cartePrese, carta);
+    }
+
+    /**
+     * Aggiunge alle carte prese tutte le carte di una presa
+     * @param presa insieme delle carte vinte
+     */
+    public void aggiungiPresa(long presa) {
+        cartePrese |= presa;
     }
 
     /**
      * Azzera tutte le carte del giocatore (mano e carte prese)
      */
     public void azzeraCarte() {
-        mano.clear();
-        cartePrese.clear();
+        mano = CardSet.VUOTO;
+        cartePrese = CardSet.VUOTO;
     }
 
     /**
      * Restituisce la mano del giocatore
-     * @return lista delle carte in mano
+     * @return vista di sola lettura delle carte in mano
      */
     public List<Carta> getMano() {
+        return vistaMano;
+    }
+
+    /**
+     * Restituisce la mano del giocatore come insieme di bit
+     * @return carte in mano come {@link CardSet}
+     */
+    public long getManoBits() {
         return mano;
     }
 
     /**
      * Restituisce le carte prese dal giocatore
-     * @return lista delle carte prese
+     * @return vista di sola lettura delle carte prese
      */
     public List<Carta> getCartePrese() {
+        return vistaCartePrese;
+    }
+
+    /**
+     * Restituisce le carte prese dal giocatore come insieme di bit
+     * @return carte prese come {@link CardSet}
+     */
+    public long getCartePreseBits() {
         return cartePrese;
     }
 
@@ -83,14 +118,10 @@ public class Giocatore {
 
     /**
      * Calcola il punteggio totale delle carte prese dal giocatore
-     * @return il punteggio in punti di gioco
+     * @return il punteggio in punti di gioco interi (terzi troncati)
      */
-    public double calcolaPunteggio() {
-        double punteggio = 0;
-        for (Carta carta : cartePrese) {
-            punteggio += carta.getPunti();
-        }
-        return punteggio / 100.0; // Converte in punti di gioco
+    public int calcolaPunteggio() {
+        return CardSet.puntiInTerzi(cartePrese) / 3;
     }
 
     @Override
@@ -73,7 +73,7 @@ public class LoggingObserver implements GameStateObserver {
     @Override
     public void onFineMano(String vincitore, double puntiMano) {
         if (loggingEnabled) {
-            log(">> " + vincitore + " vince la presa (" + puntiMano + " punti)");
+            log(">> " + vincitore + " vince la presa (" + String.format("%.2f", puntiMano) + " punti)");
         }
     }
     
@@ -1,6 +1,7 @@
 package it.uniroma1.tresette.view.panels;
 
 import it.uniroma1.tresette.controller.GameController;
+import it.uniroma1.tresette.controller.GameSnapshot;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.view.utils.PaletteColori;
 import it.uniroma1.tresette.view.icons.CardImageLoader;
@@ -117,10 +118,11 @@ public class PlayedCardsPanel extends JPanel {
      */
     public void aggiornaCarteGiocate() {
         SwingUtilities.invokeLater(() -> {
+            GameSnapshot snapshot = gameController.getSnapshot();
             if (numeroGiocatori == 2) {
                 // Modalità 1v1: mapping diretto
                 for (int giocatore = 0; giocatore < 2; giocatore++) {
-                    Carta carta = gameController.getCartaPerPosizione(giocatore);
+                    Carta carta = snapshot.getCartaPerPosizione(giocatore);
                     
                     if (carta != null) {
                         java.awt.image.BufferedImage img = CardImageLoader.load(carta.getRisorsaNome());
@@ -138,7 +140,7 @@ public class PlayedCardsPanel extends JPanel {
                 
                 for (int giocatore = 0; giocatore < 4; giocatore++) {
                     int riquadroUI = mappingPosizioni[giocatore];
-                    Carta carta = gameController.getCartaPerPosizione(giocatore);
+                    Carta carta = snapshot.getCartaPerPosizione(giocatore);
                     
                     if (carta != null) {
                         java.awt.image.BufferedImage img = CardImageLoader.load(carta.getRisorsaNome());
@@ -1,6 +1,8 @@
 package it.uniroma1.tresette.view.panels;
 
 import it.uniroma1.tresette.controller.GameController;
+import it.uniroma1.tresette.controller.GameSnapshot;
+import it.uniroma1.tresette.model.CardSet;
 import it.uniroma1.tresette.model.Carta;
 import it.uniroma1.tresette.view.components.UIComponentFactory;
 import it.uniroma1.tresette.view.icons.IconFactory;
@@ -8,7 +10,6 @@ import it.uniroma1.tresette.view.icons.CardImageLoader;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
 
 /**
  * Pannello per le carte del giocatore umano.
@@ -104,11 +105,10 @@ public class PlayerCardsPanel extends JPanel {
      * @param indice indice della carta
      */
     private void ripristinaCartaOriginale(int indice) {
-        it.uniroma1.tresette.model.Giocatore[] giocatori = gameController.getGiocatori();
-        if (giocatori != null && giocatori.length > 0) {
-            List<Carta> manoGiocatore = giocatori[0].getMano();
-            if (indice < manoGiocatore.size()) {
-                Carta carta = manoGiocatore.get(indice);
+        GameSnapshot snapshot = gameController.getSnapshot();
+        if (snapshot != null) {
+            if (indice < snapshot.getNumeroCarte(0)) {
+                Carta carta = snapshot.getCarta(0, indice);
                 // Carica immagine tramite CardImageLoader per non dipendere dal model
                 java.awt.image.BufferedImage img = CardImageLoader.load(carta.getRisorsaNome());
                 if (img != null) bottoniCarte[indice].setIcon(new javax.swing.ImageIcon(img));
@@ -122,12 +122,12 @@ public class PlayerCardsPanel extends JPanel {
      */
     public void aggiornaManiGiocatori() {
         SwingUtilities.invokeLater(() -> {
-            it.uniroma1.tresette.model.Giocatore[] giocatori = gameController.getGiocatori();
-            List<Carta> manoGiocatore = giocatori[0].getMano();
+            GameSnapshot snapshot = gameController.getSnapshot();
+            int numeroCarte = snapshot.getNumeroCarte(0);
             
             for (int i = 0; i < 10; i++) {
-                if (i < manoGiocatore.size()) {
-                    Carta carta = manoGiocatore.get(i);
+                if (i < numeroCarte) {
+                    Carta carta = snapshot.getCarta(0, i);
                     java.awt.image.BufferedImage img = CardImageLoader.load(carta.getRisorsaNome());
                     if (img != null) bottoniCarte[i].setIcon(new javax.swing.ImageIcon(img));
                     else bottoniCarte[i].setIcon(null);
@@ -155,10 +155,11 @@ public class PlayerCardsPanel extends JPanel {
                 return;
             }
             
-            // Verifica stati di base del gioco
-            boolean giocoInCorso = gameController.isGiocoInCorso();
-            boolean giocoInPausa = gameController.isGiocoInPausa();
-            int giocatoreCorrente = gameController.getGiocatoreCorrente();
+            // Verifica stati di base del gioco su una fotografia coerente
+            GameSnapshot snapshot = gameController.getSnapshot();
+            boolean giocoInCorso = snapshot.isGiocoInCorso();
+            boolean giocoInPausa = snapshot.isGiocoInPausa();
+            int giocatoreCorrente = snapshot.getGiocatoreCorrente();
             
             // Se non è il turno del giocatore umano (indice 0), disabilita tutto
             if (!giocoInCorso || giocoInPausa || giocatoreCorrente != 0) {
@@ -171,14 +172,15 @@ public class PlayerCardsPanel extends JPanel {
             }
             
             // Abilita solo le carte giocabili
-            it.uniroma1.tresette.model.Giocatore[] giocatori = gameController.getGiocatori();
-            List<Carta> manoGiocatore = giocatori[0].getMano();
+            long mano = snapshot.getMano(0);
+            long mosseLegali = snapshot.getMosseLegali(0);
+            int numeroCarte = CardSet.conta(mano);
             
             int carteAbilitate = 0;
             for (int i = 0; i < bottoniCarte.length; i++) {
-                if (bottoniCarte[i] != null && i < manoGiocatore.size()) {
-                    Carta carta = manoGiocatore.get(i);
-                    boolean isCartaGiocabile = gameController.isCartaGiocabile(carta, 0);
+                if (bottoniCarte[i] != null && i < numeroCarte) {
+                    Carta carta = CardSet.get(mano, i);
+                    boolean isCartaGiocabile = CardSet.contiene(mosseLegali, carta);
                     
                     bottoniCarte[i].setEnabled(isCartaGiocabile);
                     
@@ -191,13 +193,13 @@ public class PlayerCardsPanel extends JPanel {
             }
             
             // CONTROLLO CRITICO: Se nessuna carta è abilitata ma il gioco è in corso, c'è un problema
-            if (carteAbilitate == 0 && manoGiocatore.size() > 0) {
-                System.err.println("ERRORE: Nessuna carta abilitata ma giocatore ha " + manoGiocatore.size() + " carte!");
+            if (carteAbilitate == 0 && numeroCarte > 0) {
+                System.err.println("ERRORE: Nessuna carta abilitata ma giocatore ha " + numeroCarte + " carte!");
                 System.err.println("ERRORE: Questo non dovrebbe mai succedere nel Tresette!");
                 
                 // In caso di emergenza, abilita tutte le carte
                 System.err.println("EMERGENZA: Abilitando tutte le carte");
-                for (int i = 0; i < bottoniCarte.length && i < manoGiocatore.size(); i++) {
+                for (int i = 0; i < bottoniCarte.length && i < numeroCarte; i++) {
                     if (bottoniCarte[i] != null) {
                         bottoniCarte[i].setEnabled(true);
                     }
@@ -61,19 +61,19 @@ public class TopGamePanel extends JPanel {
     /**
      * Aggiorna i punteggi delle coppie o dei giocatori individuali
      */
-    public void aggiornaPunteggi(double punteggioCoppia1, double punteggioCoppia2) {
+    public void aggiornaPunteggi(int punteggioCoppia1, int punteggioCoppia2) {
         SwingUtilities.invokeLater(() -> {
             it.uniroma1.tresette.model.Giocatore[] giocatori = gameController.getGiocatori();
             
             if (gameController.getNumeroGiocatori() == 2) {
                 // Modalità 1v1: mostra punteggi individuali
-                labelPunteggi.setText(String.format("Punteggi: %s: %.1f | %s: %.1f",
+                labelPunteggi.setText(String.format("Punteggi: %s: %d | %s: %d",
                         giocatori[0].getNome(), punteggioCoppia1,
                         giocatori[1].getNome(), punteggioCoppia2));
             } else {
                 // Modalità 4 giocatori: mostra punteggi per coppie
                 labelPunteggi.setText(String.format("Punteggi Totali: " + giocatori[0].getNome() + " - " + giocatori[2].getNome() +
-                        " : %.1f | " + giocatori[1].getNome() + " - " + giocatori[3].getNome() + " : %.1f",
+                        " : %d | " + giocatori[1].getNome() + " - " + giocatori[3].getNome() + " : %d",
                         punteggioCoppia1, punteggioCoppia2));
             }
             repaint();
@@ -85,7 +85,7 @@ public class TopGamePanel extends JPanel {
      */
     public void aggiornaTurno(String nomeGiocatore, int indiceGiocatore) {
         SwingUtilities.invokeLater(() -> {
-            if (gameController.isGiocoInPausa()) {
+            if (gameController.getSnapshot().isGiocoInPausa()) {
                 labelTurno.setText("GIOCO IN PAUSA - Premi '▶' per continuare");
                 btnPausaRiprendi.setText("▶");
                 btnPausaRiprendi.setBackground(new Color(34, 139, 34)); // Verde
@@ -95,6 +95,15 @@ public class Tresette extends JFrame implements GameView {
         gameController.nuovaPartita();
     }
 
+    /**
+     * Chiude la finestra della partita rilasciando le risorse dell'AI
+     */
+    @Override
+    public void dispose() {
+        gameController.chiudi();
+        super.dispose();
+    }
+
     /**
      * Inizializza l'interfaccia grafica principale usando i pannelli modulari
      */
@@ -140,7 +149,7 @@ public class Tresette extends JFrame implements GameView {
     }
     
     @Override
-    public void aggiornaPunteggi(double punteggioCoppia1, double punteggioCoppia2) {
+    public void aggiornaPunteggi(int punteggioCoppia1, int punteggioCoppia2) {
         topPanel.aggiornaPunteggi(punteggioCoppia1, punteggioCoppia2);
     }
     